@@ -1,18 +1,25 @@
 package com.example.proxy;
 
+import com.example.proxy.config.ProxyConfig;
+import com.example.proxy.service.EventRegistrationStore;
+import com.example.proxy.service.EventRegistrationStore.Outcome;
+import com.example.proxy.service.EventRegistrationStore.Registration;
+import com.example.proxy.service.EventRegistrationStore.Result;
+import com.example.proxy.service.ProxyExchange;
+import com.example.proxy.service.UpstreamProxyService;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
-import java.net.URI;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/proxy")
@@ -20,34 +27,42 @@ public class ProxyController {
 
     private final Logger log = LoggerFactory.getLogger(ProxyController.class);
 
-    @Value("${upstream.base.url}")
-    private String upstreamBaseUrl;
+    // How long shutdown waits for interrupted proxy threads to finish
+    private static final long PROXY_TERMINATION_TIMEOUT_MS = 5_000;
 
-    @Value("${server.api.key:}")
-    private String serverApiKey;
+    private final UpstreamProxyService upstreamProxyService;
+    private final ProxyConfig proxyConfig;
+    private final SimpleAsyncTaskExecutor proxyExecutor = new SimpleAsyncTaskExecutor("proxy-");
 
-    private final RestTemplate rest;
-
-    // In-memory storage for event registrations (In production, use a database)
-    private final Map<String, Map<String, Map<String, Object>>> eventRegistrations = new ConcurrentHashMap<>();
-    private final Map<String, AtomicInteger> eventCapacity = new ConcurrentHashMap<>();
+    // Event registrations, persisted across restarts
+    private final EventRegistrationStore registrationStore;
     
     private void initializeEvents() {
         // AIR Mid-Point Check-In
-        eventCapacity.putIfAbsent("air-midpoint-checkin", new AtomicInteger(50));
+        registrationStore.defineEvent("air-midpoint-checkin", 50);
         
         // International Day of Persons with Disabilities
-        eventCapacity.putIfAbsent("international-day-disabilities", new AtomicInteger(100));
+        registrationStore.defineEvent("international-day-disabilities", 100);
         
         // AIR Awards Ceremony
-        eventCapacity.putIfAbsent("air-awards-ceremony", new AtomicInteger(75));
+        registrationStore.defineEvent("air-awards-ceremony", 75);
     }
 
-    public ProxyController(RestTemplate restTemplate) {
-        this.rest = restTemplate;
+    public ProxyController(UpstreamProxyService upstreamProxyService, ProxyConfig proxyConfig,
+                           EventRegistrationStore registrationStore) {
+        this.upstreamProxyService = upstreamProxyService;
+        this.proxyConfig = proxyConfig;
+        this.registrationStore = registrationStore;
+        this.proxyExecutor.setVirtualThreads(true);
+        this.proxyExecutor.setTaskTerminationTimeout(PROXY_TERMINATION_TIMEOUT_MS);
         initializeEvents();
     }
 
+    @PreDestroy
+    public void close() {
+        proxyExecutor.close();
+    }
+
     private String extractPath(HttpServletRequest req) {
         String uri = req.getRequestURI();
         // strip /proxy prefix
@@ -55,35 +70,54 @@ public class ProxyController {
     }
 
     @RequestMapping(value = "**", method = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.DELETE, RequestMethod.PATCH})
-    public ResponseEntity<String> proxy(HttpMethod method, HttpEntity<byte[]> httpEntity, HttpServletRequest request) throws IOException {
+    public WebAsyncTask<Void> proxy(HttpMethod method, HttpServletRequest request, HttpServletResponse response) throws IOException {
         String path = extractPath(request);
-        String query = request.getQueryString();
-        String target = upstreamBaseUrl + path + (query != null ? "?" + query : "");
+        ProxyExchange exchange = new ProxyExchange(response);
 
-        log.info("Incoming request: {} {} -> {}", method, path, target);
+        if (!proxyConfig.isAsync()) {
+            forward(method, path, request, exchange);
+            return null;
+        }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.putAll(httpEntity.getHeaders());
+        // Hand the call to a virtual thread; the Tomcat worker returns to the pool while upstream is busy
+        WebAsyncTask<Void> task = new WebAsyncTask<>(proxyConfig.getAsyncTimeout().toMillis(), proxyExecutor, () -> {
+            forward(method, path, request, exchange);
+            return null;
+        });
+        // Once the container gives up on the request it may reuse the response, so the upstream call
+        // is cancelled and the virtual thread writes nothing more
+        task.onTimeout(() -> {
+            exchange.complete();
+            log.warn("Proxied request {} {} timed out after {}", method, path, proxyConfig.getAsyncTimeout());
+            if (response.isCommitted()) {
+                // Part of the upstream response already went out; the client sees it cut short
+                return null;
+            }
+            throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT);
+        });
+        task.onError(() -> {
+            // The client connection failed, so there is nobody left to answer
+            exchange.complete();
+            return null;
+        });
+        task.onCompletion(exchange::complete);
+        return task;
+    }
 
-        // For POST/PUT/DELETE, ensure the server-side API key header is present
-        if (method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.DELETE) {
-            if (serverApiKey != null && !serverApiKey.isEmpty()) {
-                headers.set("X-API-Key", serverApiKey);
-                log.debug("Added server-side X-API-Key header for method {}", method);
-            } else {
-                log.warn("Server API key is not configured but a mutating request was proxied: {} {}", method, path);
+    private void forward(HttpMethod method, String path, HttpServletRequest request, ProxyExchange exchange) throws IOException {
+        try {
+            upstreamProxyService.forward(method, path, request, exchange);
+        } catch (IOException e) {
+            // On timeout Spring interrupts the task before the timeout callback completes the exchange
+            if (exchange.isCompleted() || Thread.currentThread().isInterrupted()) {
+                log.debug("Stopped proxying {} {} after the request completed", method, path);
+                return;
+            }
+            log.error("Upstream request failed for {} {}: {}", method, path, e.getMessage());
+            if (!exchange.response().isCommitted()) {
+                exchange.response().sendError(HttpStatus.BAD_GATEWAY.value());
             }
         }
-
-        byte[] body = httpEntity.getBody();
-
-        HttpEntity<byte[]> forwardEntity = new HttpEntity<>(body, headers);
-
-        ResponseEntity<String> resp = rest.exchange(URI.create(target), method, forwardEntity, String.class);
-
-        log.info("Upstream responded: {} for {} {}", resp.getStatusCode(), method, path);
-
-        return ResponseEntity.status(resp.getStatusCode()).headers(resp.getHeaders()).body(resp.getBody());
     }
 
     @GetMapping("/health")
@@ -113,42 +147,28 @@ public class ProxyController {
                 return ResponseEntity.badRequest().body(response);
             }
             
-            // Check if event exists
-            if (!eventCapacity.containsKey(eventId)) {
+            // Seats are reserved atomically, so concurrent registrations can't overbook the event
+            Result result = registrationStore.register(eventId, username, email, fullName);
+            
+            if (result.outcome() == Outcome.NOT_FOUND) {
                 response.put("success", false);
                 response.put("message", "Event not found");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
             }
             
-            // Initialize event registrations if not exists
-            eventRegistrations.putIfAbsent(eventId, new ConcurrentHashMap<>());
-            
-            // Check if user already registered
-            if (eventRegistrations.get(eventId).containsKey(username)) {
+            if (result.outcome() == Outcome.ALREADY_REGISTERED) {
                 response.put("success", false);
                 response.put("message", "You are already registered for this event");
                 return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
             }
             
-            // Check capacity
-            AtomicInteger capacity = eventCapacity.get(eventId);
-            int currentCount = eventRegistrations.get(eventId).size();
-            
-            if (currentCount >= capacity.get()) {
+            if (result.outcome() == Outcome.FULL) {
                 response.put("success", false);
                 response.put("message", "Event is full");
                 return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
             }
             
-            // Register user
-            Map<String, Object> registration = new HashMap<>();
-            registration.put("username", username);
-            registration.put("email", email);
-            registration.put("fullName", fullName);
-            registration.put("registeredAt", new Date().toString());
-            registration.put("status", "confirmed");
-            
-            eventRegistrations.get(eventId).put(username, registration);
+            Map<String, Object> registration = result.registration().toMap();
             
             response.put("success", true);
             response.put("message", "Successfully registered for the event");
@@ -177,15 +197,12 @@ public class ProxyController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            if (!eventRegistrations.containsKey(eventId) || 
-                !eventRegistrations.get(eventId).containsKey(username)) {
+            if (!registrationStore.cancel(eventId, username)) {
                 response.put("success", false);
                 response.put("message", "Registration not found");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
             }
             
-            eventRegistrations.get(eventId).remove(username);
-            
             response.put("success", true);
             response.put("message", "Registration cancelled successfully");
             
@@ -207,14 +224,14 @@ public class ProxyController {
         
         Map<String, Object> response = new HashMap<>();
         
-        if (!eventCapacity.containsKey(eventId)) {
+        if (!registrationStore.isDefined(eventId)) {
             response.put("success", false);
             response.put("message", "Event not found");
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
         }
         
-        int maxCapacity = eventCapacity.get(eventId).get();
-        int currentRegistrations = eventRegistrations.getOrDefault(eventId, new HashMap<>()).size();
+        int maxCapacity = registrationStore.getCapacity(eventId);
+        int currentRegistrations = registrationStore.getRegistrationCount(eventId);
         
         response.put("success", true);
         response.put("eventId", eventId);
@@ -236,15 +253,10 @@ public class ProxyController {
         Map<String, Object> response = new HashMap<>();
         List<Map<String, Object>> registrations = new ArrayList<>();
         
-        for (Map.Entry<String, Map<String, Map<String, Object>>> entry : eventRegistrations.entrySet()) {
-            String eventId = entry.getKey();
-            Map<String, Map<String, Object>> eventRegs = entry.getValue();
-            
-            if (eventRegs.containsKey(username)) {
-                Map<String, Object> reg = new HashMap<>(eventRegs.get(username));
-                reg.put("eventId", eventId);
-                registrations.add(reg);
-            }
+        for (Registration registration : registrationStore.getUserRegistrations(username)) {
+            Map<String, Object> reg = registration.toMap();
+            reg.put("eventId", registration.eventId());
+            registrations.add(reg);
         }
         
         response.put("success", true);
@@ -262,19 +274,19 @@ public class ProxyController {
         
         Map<String, Object> response = new HashMap<>();
         
-        if (!eventCapacity.containsKey(eventId)) {
+        if (!registrationStore.isDefined(eventId)) {
             response.put("success", false);
             response.put("message", "Event not found");
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
         }
         
-        Map<String, Map<String, Object>> eventRegs = eventRegistrations.getOrDefault(eventId, new HashMap<>());
+        List<Registration> eventRegs = registrationStore.getRegistrations(eventId);
         
         response.put("success", true);
         response.put("eventId", eventId);
-        response.put("maxCapacity", eventCapacity.get(eventId).get());
+        response.put("maxCapacity", registrationStore.getCapacity(eventId));
         response.put("currentRegistrations", eventRegs.size());
-        response.put("registrations", new ArrayList<>(eventRegs.values()));
+        response.put("registrations", eventRegs.stream().map(Registration::toMap).toList());
         
         return ResponseEntity.ok(response);
     }
@@ -288,15 +300,16 @@ public class ProxyController {
         Map<String, Object> response = new HashMap<>();
         List<Map<String, Object>> allEvents = new ArrayList<>();
         
-        for (String eventId : eventCapacity.keySet()) {
+        for (String eventId : registrationStore.eventIds()) {
+            int maxCapacity = registrationStore.getCapacity(eventId);
             Map<String, Object> eventData = new HashMap<>();
             eventData.put("eventId", eventId);
-            eventData.put("maxCapacity", eventCapacity.get(eventId).get());
+            eventData.put("maxCapacity", maxCapacity);
             
-            Map<String, Map<String, Object>> eventRegs = eventRegistrations.getOrDefault(eventId, new HashMap<>());
+            List<Registration> eventRegs = registrationStore.getRegistrations(eventId);
             eventData.put("currentRegistrations", eventRegs.size());
-            eventData.put("availableSpots", eventCapacity.get(eventId).get() - eventRegs.size());
-            eventData.put("registrations", new ArrayList<>(eventRegs.values()));
+            eventData.put("availableSpots", maxCapacity - eventRegs.size());
+            eventData.put("registrations", eventRegs.stream().map(Registration::toMap).toList());
             
             allEvents.add(eventData);
         }
@@ -1,7 +1,12 @@
 package com.example.proxy;
 
-import org.apache.hc.client5.http.classic.HttpClient;
+import com.example.proxy.config.InstrumentedConnectionManager;
+import com.example.proxy.config.ProxyConfig;
+import com.example.proxy.service.ProxyMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.core5.util.Timeout;
@@ -14,18 +19,37 @@ import org.springframework.web.client.RestTemplate;
 public class RestTemplateConfig {
 
     @Bean
-    RestTemplate restTemplate() {
-        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
-        connectionManager.setMaxTotal(100);
-        connectionManager.setDefaultMaxPerRoute(20);
+    PoolingHttpClientConnectionManager connectionManager(ProxyConfig proxyConfig, ProxyMetrics proxyMetrics,
+                                                         MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = new InstrumentedConnectionManager(proxyMetrics);
+        connectionManager.setMaxTotal(proxyConfig.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(proxyConfig.getMaxConnectionsPerRoute());
 
-        RequestConfig requestConfig = RequestConfig.custom()
+        Gauge.builder("proxy.upstream.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                .description("Upstream connections currently in use")
+                .register(meterRegistry);
+        Gauge.builder("proxy.upstream.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                .description("Requests waiting for an upstream connection")
+                .register(meterRegistry);
+        Gauge.builder("proxy.upstream.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                .description("Idle upstream connections kept alive in the pool")
+                .register(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    RequestConfig requestConfig() {
+        return RequestConfig.custom()
                 .setConnectionRequestTimeout(Timeout.ofSeconds(10))
                 .setResponseTimeout(Timeout.ofSeconds(30))
                 .build();
+    }
 
-        HttpClient httpClient = HttpClientBuilder.create()
+    @Bean
+    RestTemplate restTemplate(PoolingHttpClientConnectionManager connectionManager, RequestConfig requestConfig) {
+        CloseableHttpClient httpClient = HttpClientBuilder.create()
                 .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
                 .setDefaultRequestConfig(requestConfig)
                 .build();
 
@@ -33,4 +57,22 @@ public class RestTemplateConfig {
 
         return new RestTemplate(factory);
     }
+
+    /**
+     * Client used by the /proxy/** pass-through. It shares the connection pool with the
+     * RestTemplate but never follows redirects, so the caller sees exactly what upstream sent.
+     * Automatic retries are off: the proxy retries idempotent calls itself, within a retry budget.
+     * Content decompression is off too, so encoded bodies pass through without being inflated.
+     */
+    @Bean
+    CloseableHttpClient proxyHttpClient(PoolingHttpClientConnectionManager connectionManager, RequestConfig requestConfig) {
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig)
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .disableContentCompression()
+                .build();
+    }
 }
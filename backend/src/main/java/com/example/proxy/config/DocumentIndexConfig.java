@@ -0,0 +1,55 @@
+package com.example.proxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "search.documents")
+public class DocumentIndexConfig {
+
+    private boolean enabled = true; // extract and index the text of stored PDFs
+    private int workers = 2; // extraction threads; parsing is CPU and memory heavy
+    private int queueCapacity = 200; // saves beyond this wait for the next free slot
+    private String cacheDir = "document-text"; // extracted text, one file per content hash
+    private int maxPages = 1000; // pages past this are not extracted
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+    public void setCacheDir(String cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    public void setMaxPages(int maxPages) {
+        this.maxPages = maxPages;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.proxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "events.registrations")
+public class EventRegistrationConfig {
+
+    private String dataDir = "event-registrations"; // write-ahead log and snapshot live here
+    private Duration snapshotInterval = Duration.ofMinutes(5); // how often the log is compacted into a snapshot
+    private boolean fsync = true; // force each log record to disk before answering
+
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(Duration snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.proxy.config;
+
+import com.example.proxy.service.ProxyMetrics;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pooling connection manager that times connection leases and new connections.
+ *
+ * Lease waits are recorded per upstream host. Connect time is left in the request's context under
+ * {@link #CONNECT_NANOS}, so the caller can record it against its own route.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+    public static final String CONNECT_NANOS = "proxy.connect.nanos";
+
+    private final ProxyMetrics proxyMetrics;
+
+    public InstrumentedConnectionManager(ProxyMetrics proxyMetrics) {
+        this.proxyMetrics = proxyMetrics;
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest lease = super.lease(id, route, requestTimeout, state);
+        String host = route.getTargetHost().toHostString();
+        return new LeaseRequest() {
+
+            @Override
+            public ConnectionEndpoint get(Timeout timeout) throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return lease.get(timeout);
+                } finally {
+                    proxyMetrics.recordLeaseWait(host, System.nanoTime() - start);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return lease.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void connect(ConnectionEndpoint endpoint, TimeValue timeout, HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.connect(endpoint, timeout, context);
+        } finally {
+            if (context != null) {
+                context.setAttribute(CONNECT_NANOS, System.nanoTime() - start);
+            }
+        }
+    }
+}
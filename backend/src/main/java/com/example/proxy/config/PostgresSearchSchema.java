@@ -0,0 +1,88 @@
+package com.example.proxy.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Adds the PostgreSQL-only search indexes that Hibernate's ddl-auto doesn't know about. They are
+ * created idempotently at startup once Hibernate has created or updated the tables; on any other
+ * database this does nothing.
+ *
+ * Trigram (pg_trgm) GIN indexes on the normalized title and description columns serve the
+ * substring LIKEs of app.search.mode=like. With app.search.mode=postgres, generated tsvector columns
+ * over the same normalized text get GIN indexes too; titles weigh more than descriptions in ts_rank.
+ * The 'simple' configuration is used because content mixes English and Nepali and no stemmer suits
+ * both. Needs PostgreSQL 12 or later.
+ */
+@Component
+public class PostgresSearchSchema {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresSearchSchema.class);
+
+    private static final List<String> TRIGRAM_STATEMENTS = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_resources_search_title_trgm ON resources USING GIN (search_title gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_resources_search_description_trgm ON resources USING GIN (search_description gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_events_search_title_trgm ON events USING GIN (search_title gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_events_search_description_trgm ON events USING GIN (search_description gin_trgm_ops)");
+
+    private static final List<String> FULL_TEXT_TABLES = List.of("resources", "events");
+
+    // Column the generated search_vector must be built from; databases set up before the normalized
+    // columns existed have it built from the raw title instead
+    private static final String VECTOR_SOURCE_COLUMN = "search_title";
+
+    private static final String VECTOR_EXPRESSION =
+            "setweight(to_tsvector('simple', coalesce(search_title, '')), 'A') || " +
+            "setweight(to_tsvector('simple', coalesce(search_description, '')), 'B')";
+
+    // Depending on the EntityManagerFactory makes sure Hibernate has set up the tables first
+    public PostgresSearchSchema(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+                                @Value("${app.search.mode:index}") String searchMode) {
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(database)) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            TRIGRAM_STATEMENTS.forEach(jdbcTemplate::execute);
+            log.info("Trigram indexes on the normalized search columns are in place");
+        } catch (DataAccessException e) {
+            // Creating an extension needs elevated rights on some hosted databases
+            log.warn("Could not set up pg_trgm, substring searches will scan: {}", e.getMessage());
+        }
+
+        if ("postgres".equalsIgnoreCase(searchMode)) {
+            FULL_TEXT_TABLES.forEach(table -> createSearchVector(jdbcTemplate, table));
+            log.info("Full-text search columns and GIN indexes are in place");
+        }
+    }
+
+    /**
+     * ADD COLUMN IF NOT EXISTS leaves an existing column alone, so a search_vector generated from
+     * an older expression is dropped first, together with its index, and rebuilt from this one.
+     */
+    private static void createSearchVector(JdbcTemplate jdbcTemplate, String table) {
+        List<String> expressions = jdbcTemplate.queryForList(
+                "SELECT generation_expression FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ? AND column_name = 'search_vector'",
+                String.class, table);
+        if (!expressions.isEmpty() && (expressions.get(0) == null || !expressions.get(0).contains(VECTOR_SOURCE_COLUMN))) {
+            log.info("Regenerating {}.search_vector from the normalized search columns", table);
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN search_vector");
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS search_vector tsvector " +
+                "GENERATED ALWAYS AS (" + VECTOR_EXPRESSION + ") STORED");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_search_vector ON " + table +
+                " USING GIN (search_vector)");
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.proxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "upstream.proxy")
+public class ProxyConfig {
+
+    private boolean streaming = true; // copy bodies through a fixed buffer instead of holding them in memory
+    private int bufferSize = 8192; // 8KB per in-flight request
+    private boolean async = true; // run upstream calls on virtual threads, releasing the Tomcat worker
+    private Duration asyncTimeout = Duration.ofMinutes(2); // must outlive the upstream response timeout
+    private int maxConnections = 100;
+    private int maxConnectionsPerRoute = 20;
+    private boolean cacheEnabled = true; // cache GET responses the upstream marks as cacheable
+    private DataSize cacheMaxSize = DataSize.ofMegabytes(64);
+    private DataSize cacheMaxEntrySize = DataSize.ofMegabytes(1); // larger bodies are streamed but never cached or shared
+    private boolean coalesce = true; // identical in-flight GETs share one upstream call
+    private List<String> coalesceVaryHeaders = List.of("Accept", "Accept-Encoding", "Accept-Language");
+    private Duration coalesceMaxWait = Duration.ofSeconds(30);
+    private List<Route> routes = new ArrayList<>(); // unmatched paths go to upstream.base.url
+    private String healthCheckPath = "/health"; // empty disables probes; ejected instances then get periodic trial requests
+    private Duration healthCheckInterval = Duration.ofSeconds(10);
+    private Duration healthCheckTimeout = Duration.ofSeconds(2);
+    private int unhealthyThreshold = 3; // consecutive failures before an instance is ejected
+    private int circuitWindowSize = 50; // calls remembered per route
+    private int circuitMinimumCalls = 20; // calls needed before the failure rate counts
+    private int circuitFailureRateThreshold = 50; // percent
+    private Duration circuitOpenDuration = Duration.ofSeconds(30);
+    private int circuitHalfOpenCalls = 5; // trial calls after the open period
+    private int concurrencyInitialLimit = 20; // starting in-flight limit per route, adapted from latency
+    private int concurrencyMinLimit = 2;
+    private int concurrencyMaxLimit = 1000;
+    private boolean hedging = false; // send a second GET/HEAD when the first is slower than hedge-percentile
+    private double hedgePercentile = 95.0;
+    private Duration hedgeMinDelay = Duration.ofMillis(20);
+    private Duration hedgeWindow = Duration.ofSeconds(30); // how much recent latency the percentile covers
+    private int maxRetries = 2; // retries of a GET/HEAD after a connection failure
+    private double retryBudgetRatio = 0.1; // retries and hedges allowed per regular request
+    private int retryBudgetMinPerSecond = 10;
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public Duration getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public void setAsyncTimeout(Duration asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public DataSize getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(DataSize cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public DataSize getCacheMaxEntrySize() {
+        return cacheMaxEntrySize;
+    }
+
+    public void setCacheMaxEntrySize(DataSize cacheMaxEntrySize) {
+        this.cacheMaxEntrySize = cacheMaxEntrySize;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public List<String> getCoalesceVaryHeaders() {
+        return coalesceVaryHeaders;
+    }
+
+    public void setCoalesceVaryHeaders(List<String> coalesceVaryHeaders) {
+        this.coalesceVaryHeaders = coalesceVaryHeaders;
+    }
+
+    public Duration getCoalesceMaxWait() {
+        return coalesceMaxWait;
+    }
+
+    public void setCoalesceMaxWait(Duration coalesceMaxWait) {
+        this.coalesceMaxWait = coalesceMaxWait;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(List<Route> routes) {
+        this.routes = routes;
+    }
+
+    public String getHealthCheckPath() {
+        return healthCheckPath;
+    }
+
+    public void setHealthCheckPath(String healthCheckPath) {
+        this.healthCheckPath = healthCheckPath;
+    }
+
+    public Duration getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(Duration healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    public Duration getHealthCheckTimeout() {
+        return healthCheckTimeout;
+    }
+
+    public void setHealthCheckTimeout(Duration healthCheckTimeout) {
+        this.healthCheckTimeout = healthCheckTimeout;
+    }
+
+    public int getUnhealthyThreshold() {
+        return unhealthyThreshold;
+    }
+
+    public void setUnhealthyThreshold(int unhealthyThreshold) {
+        this.unhealthyThreshold = unhealthyThreshold;
+    }
+
+    public int getCircuitWindowSize() {
+        return circuitWindowSize;
+    }
+
+    public void setCircuitWindowSize(int circuitWindowSize) {
+        this.circuitWindowSize = circuitWindowSize;
+    }
+
+    public int getCircuitMinimumCalls() {
+        return circuitMinimumCalls;
+    }
+
+    public void setCircuitMinimumCalls(int circuitMinimumCalls) {
+        this.circuitMinimumCalls = circuitMinimumCalls;
+    }
+
+    public int getCircuitFailureRateThreshold() {
+        return circuitFailureRateThreshold;
+    }
+
+    public void setCircuitFailureRateThreshold(int circuitFailureRateThreshold) {
+        this.circuitFailureRateThreshold = circuitFailureRateThreshold;
+    }
+
+    public Duration getCircuitOpenDuration() {
+        return circuitOpenDuration;
+    }
+
+    public void setCircuitOpenDuration(Duration circuitOpenDuration) {
+        this.circuitOpenDuration = circuitOpenDuration;
+    }
+
+    public int getCircuitHalfOpenCalls() {
+        return circuitHalfOpenCalls;
+    }
+
+    public void setCircuitHalfOpenCalls(int circuitHalfOpenCalls) {
+        this.circuitHalfOpenCalls = circuitHalfOpenCalls;
+    }
+
+    public int getConcurrencyInitialLimit() {
+        return concurrencyInitialLimit;
+    }
+
+    public void setConcurrencyInitialLimit(int concurrencyInitialLimit) {
+        this.concurrencyInitialLimit = concurrencyInitialLimit;
+    }
+
+    public int getConcurrencyMinLimit() {
+        return concurrencyMinLimit;
+    }
+
+    public void setConcurrencyMinLimit(int concurrencyMinLimit) {
+        this.concurrencyMinLimit = concurrencyMinLimit;
+    }
+
+    public int getConcurrencyMaxLimit() {
+        return concurrencyMaxLimit;
+    }
+
+    public void setConcurrencyMaxLimit(int concurrencyMaxLimit) {
+        this.concurrencyMaxLimit = concurrencyMaxLimit;
+    }
+
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public Duration getHedgeMinDelay() {
+        return hedgeMinDelay;
+    }
+
+    public void setHedgeMinDelay(Duration hedgeMinDelay) {
+        this.hedgeMinDelay = hedgeMinDelay;
+    }
+
+    public Duration getHedgeWindow() {
+        return hedgeWindow;
+    }
+
+    public void setHedgeWindow(Duration hedgeWindow) {
+        this.hedgeWindow = hedgeWindow;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+    public void setRetryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
+    }
+
+    public int getRetryBudgetMinPerSecond() {
+        return retryBudgetMinPerSecond;
+    }
+
+    public void setRetryBudgetMinPerSecond(int retryBudgetMinPerSecond) {
+        this.retryBudgetMinPerSecond = retryBudgetMinPerSecond;
+    }
+
+    /**
+     * A path prefix served by a pool of upstream instances, e.g.
+     * upstream.proxy.routes[0].prefix=/api/reports
+     * upstream.proxy.routes[0].instances=http://reports-1:4000,http://reports-2:4000
+     */
+    public static class Route {
+
+        private String prefix;
+        private List<String> instances = new ArrayList<>();
+        private Duration responseTimeout; // falls back to the client default (30s)
+        private int maxConnectionsPerInstance; // 0 keeps max-connections-per-route
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public List<String> getInstances() {
+            return instances;
+        }
+
+        public void setInstances(List<String> instances) {
+            this.instances = instances;
+        }
+
+        public Duration getResponseTimeout() {
+            return responseTimeout;
+        }
+
+        public void setResponseTimeout(Duration responseTimeout) {
+            this.responseTimeout = responseTimeout;
+        }
+
+        public int getMaxConnectionsPerInstance() {
+            return maxConnectionsPerInstance;
+        }
+
+        public void setMaxConnectionsPerInstance(int maxConnectionsPerInstance) {
+            this.maxConnectionsPerInstance = maxConnectionsPerInstance;
+        }
+    }
+}
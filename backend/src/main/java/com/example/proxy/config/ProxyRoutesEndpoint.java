@@ -0,0 +1,72 @@
+package com.example.proxy.config;
+
+import com.example.proxy.service.UpstreamRouter;
+import com.example.proxy.service.UpstreamRouter.UpstreamInstance;
+import com.example.proxy.service.UpstreamRouter.UpstreamRoute;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator view of the proxy routing table
+ * GET /actuator/proxyroutes (admin only)
+ *
+ * Shows each route's circuit breaker, adaptive concurrency limit, retry budget and instance health.
+ */
+@Component
+@Endpoint(id = "proxyroutes")
+public class ProxyRoutesEndpoint {
+
+    private final UpstreamRouter upstreamRouter;
+
+    public ProxyRoutesEndpoint(UpstreamRouter upstreamRouter) {
+        this.upstreamRouter = upstreamRouter;
+    }
+
+    @ReadOperation
+    public Map<String, Object> routes() {
+        List<Map<String, Object>> routes = new ArrayList<>();
+
+        for (UpstreamRoute route : upstreamRouter.routes()) {
+            Map<String, Object> circuit = new HashMap<>();
+            circuit.put("state", route.circuitBreaker().getState());
+            circuit.put("failureRate", route.circuitBreaker().getFailureRate());
+            circuit.put("retryAfterMillis", route.circuitBreaker().getRetryAfterMillis());
+
+            Map<String, Object> concurrency = new HashMap<>();
+            concurrency.put("limit", route.concurrencyLimit().getLimit());
+            concurrency.put("inFlight", route.concurrencyLimit().getInFlight());
+
+            Map<String, Object> retries = new HashMap<>();
+            retries.put("budget", route.retryBudget().getBalance());
+            long hedgeDelay = route.latency().getPercentileNanos();
+            retries.put("hedgeDelayMillis", hedgeDelay < 0 ? null : hedgeDelay / 1_000_000.0);
+
+            List<Map<String, Object>> instances = new ArrayList<>();
+            for (UpstreamInstance instance : route.instances()) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("url", instance.baseUrl());
+                item.put("healthy", instance.isHealthy());
+                item.put("outstanding", instance.getOutstanding());
+                instances.add(item);
+            }
+
+            Map<String, Object> item = new HashMap<>();
+            item.put("prefix", route.prefix().isEmpty() ? "default" : route.prefix());
+            item.put("circuitBreaker", circuit);
+            item.put("concurrency", concurrency);
+            item.put("retries", retries);
+            item.put("instances", instances);
+            routes.add(item);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("routes", routes);
+        return response;
+    }
+}
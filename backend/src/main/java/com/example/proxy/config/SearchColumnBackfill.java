@@ -0,0 +1,61 @@
+package com.example.proxy.config;
+
+import com.example.proxy.entity.Event;
+import com.example.proxy.entity.Resource;
+import com.example.proxy.repository.EventRepository;
+import com.example.proxy.repository.ResourceRepository;
+import com.example.proxy.util.TextNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Fills the normalized search columns of rows saved before those columns existed. New and updated
+ * rows get them from the entities' lifecycle callbacks. Uses direct updates so updatedAt is left
+ * alone.
+ */
+@Component
+public class SearchColumnBackfill implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchColumnBackfill.class);
+    private static final int BATCH_SIZE = 500;
+
+    private final ResourceRepository resourceRepository;
+    private final EventRepository eventRepository;
+
+    public SearchColumnBackfill(ResourceRepository resourceRepository, EventRepository eventRepository) {
+        this.resourceRepository = resourceRepository;
+        this.eventRepository = eventRepository;
+    }
+
+    @Override
+    public void run(String... args) {
+        int resources = 0;
+        List<Resource> resourceBatch;
+        while (!(resourceBatch = resourceRepository.findBySearchTitleIsNull(Limit.of(BATCH_SIZE))).isEmpty()) {
+            for (Resource resource : resourceBatch) {
+                resourceRepository.updateSearchColumns(resource.getId(),
+                        TextNormalizer.normalize(resource.getTitle()), TextNormalizer.normalize(resource.getDescription()));
+            }
+            resources += resourceBatch.size();
+        }
+
+        int events = 0;
+        List<Event> eventBatch;
+        while (!(eventBatch = eventRepository.findBySearchTitleIsNull(Limit.of(BATCH_SIZE))).isEmpty()) {
+            for (Event event : eventBatch) {
+                eventRepository.updateSearchColumns(event.getId(),
+                        TextNormalizer.normalize(event.getTitle()), TextNormalizer.normalize(event.getDescription()));
+            }
+            events += eventBatch.size();
+        }
+
+        if (resources > 0 || events > 0) {
+            log.info("Filled normalized search columns for {} resources and {} events", resources, events);
+        }
+    }
+}
@@ -40,12 +40,15 @@ public class SecurityConfig {
                 .requestMatchers("/api/payment/verify").permitAll()
                 .requestMatchers("/api/payment/webhook").permitAll()
                 .requestMatchers("/api/payment/status/**").permitAll()
+                // Proxy routing table: upstream URLs and their health, admins only
+                .requestMatchers("/actuator/proxyroutes", "/actuator/proxyroutes/**").hasRole("ADMIN")
                 // Public endpoints - monitoring
                 .requestMatchers("/actuator/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
                 // Admin only endpoints
                 .requestMatchers(HttpMethod.GET, "/api/forms/membership", "/api/forms/volunteer").hasRole("ADMIN")
                 .requestMatchers("/api/payment/transactions").hasRole("ADMIN")
+                .requestMatchers("/api/resources/import", "/api/resources/import/**").hasRole("ADMIN")
                 // All other requests are public (home page, about page, etc.)
                 .anyRequest().permitAll()
             )
@@ -1,5 +1,6 @@
 package com.example.proxy.controller;
 
+import com.example.proxy.dto.EventSummary;
 import com.example.proxy.entity.Event;
 import com.example.proxy.entity.EventRegistration;
 import com.example.proxy.service.EventService;
@@ -28,9 +29,9 @@ public class EventController {
     }
     
     @GetMapping
-    public ResponseEntity<List<Event>> getAllEvents() {
+    public ResponseEntity<List<EventSummary>> getAllEvents() {
         log.info("Fetching all events");
-        List<Event> events = eventService.getAllEvents();
+        List<EventSummary> events = eventService.getAllEvents();
         // Cache all events for 5 minutes
         return ResponseEntity.ok()
                 .cacheControl(org.springframework.http.CacheControl.maxAge(5, java.util.concurrent.TimeUnit.MINUTES))
@@ -246,18 +247,18 @@ public class EventController {
         
         log.info("Fetching all events with registrations for admin dashboard");
         
-        List<Event> events = eventService.getAllEvents();
+        List<EventSummary> events = eventService.getAllEvents();
         List<Map<String, Object>> response = new ArrayList<>();
         
-        for (Event event : events) {
+        for (EventSummary event : events) {
             Map<String, Object> eventData = new HashMap<>();
-            eventData.put("eventId", event.getId());
-            eventData.put("eventTitle", event.getTitle());
-            eventData.put("maxCapacity", event.getMaxAttendees());
-            eventData.put("currentRegistrations", event.getCurrentAttendees());
-            eventData.put("availableSpots", event.getMaxAttendees() - event.getCurrentAttendees());
+            eventData.put("eventId", event.id());
+            eventData.put("eventTitle", event.title());
+            eventData.put("maxCapacity", event.maxAttendees());
+            eventData.put("currentRegistrations", event.currentAttendees());
+            eventData.put("availableSpots", event.maxAttendees() - event.currentAttendees());
             
-            List<EventRegistration> registrations = eventService.getEventRegistrations(event.getId());
+            List<EventRegistration> registrations = eventService.getEventRegistrations(event.id());
             List<Map<String, Object>> registrationsList = registrations.stream()
                 .map(reg -> {
                     Map<String, Object> regData = new HashMap<>();
@@ -1,18 +1,30 @@
 package com.example.proxy.controller;
 
+import com.example.proxy.dto.FavoriteSummary;
+import com.example.proxy.dto.ResourceSummary;
+import com.example.proxy.dto.TrendingResource;
 import com.example.proxy.entity.Resource;
-import com.example.proxy.entity.ResourceFavorite;
+import com.example.proxy.service.CatalogueSnapshots;
+import com.example.proxy.service.ResourceImportService;
 import com.example.proxy.service.ResourceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/resources")
@@ -21,55 +33,150 @@ public class ResourceController {
     private static final Logger log = LoggerFactory.getLogger(ResourceController.class);
     
     private final ResourceService resourceService;
+    private final CatalogueSnapshots catalogueSnapshots;
+    private final ResourceImportService resourceImportService;
     
-    public ResourceController(ResourceService resourceService) {
+    public ResourceController(ResourceService resourceService, CatalogueSnapshots catalogueSnapshots,
+                              ResourceImportService resourceImportService) {
         this.resourceService = resourceService;
+        this.catalogueSnapshots = catalogueSnapshots;
+        this.resourceImportService = resourceImportService;
     }
     
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getResources(
+    public ResponseEntity<?> getResources(
             @RequestParam(required = false) String type,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false, defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String after,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         
         log.info("Fetching resources - type: {}, search: {}", type, search);
         
-        // Add cache control headers (5 minutes) for performance
+        // Cache control headers (5 minutes) for performance
+        CacheControl cacheControl = CacheControl.maxAge(5, TimeUnit.MINUTES);
+        
+        if (search == null && size == null && after == null) {
+            // The plain catalogue listing, served from a pre-serialized snapshot
+            CatalogueSnapshots.Snapshot snapshot = catalogueSnapshots.get(
+                    type != null ? "type:" + type : CatalogueSnapshots.ALL,
+                    () -> getResourcesData(type, null, 0, null, false, null, null));
+            return snapshotResponse(snapshot, cacheControl, ifNoneMatch, acceptEncoding);
+        }
+        
+        LocalDateTime afterDate = null;
+        Long afterId = null;
+        if (after != null) {
+            // Cursor is "<publishDate>,<id>" of the last resource on the previous page
+            int comma = after.lastIndexOf(',');
+            try {
+                afterDate = LocalDateTime.parse(after.substring(0, comma));
+                afterId = Long.parseLong(after.substring(comma + 1));
+            } catch (RuntimeException e) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", false);
+                response.put("message", "Invalid cursor: " + after);
+                return ResponseEntity.badRequest().body(response);
+            }
+        }
+        
         return ResponseEntity.ok()
-                .cacheControl(org.springframework.http.CacheControl.maxAge(5, java.util.concurrent.TimeUnit.MINUTES))
-                .body(getResourcesData(type, search));
+                .cacheControl(cacheControl)
+                .body(getResourcesData(type, search, page, size, after != null, afterDate, afterId));
     }
     
-    private Map<String, Object> getResourcesData(String type, String search) {
-        List<Resource> resources;
+    private Map<String, Object> getResourcesData(String type, String search, int page, Integer size,
+                                                 boolean keyset, LocalDateTime afterDate, Long afterId) {
+        Map<String, Object> response = new HashMap<>();
+        Map<String, Long> typeCounts = resourceService.getTypeCounts();
         
-        if (type != null && search != null) {
-            resources = resourceService.searchResourcesByTypeAndQuery(type, search);
-        } else if (type != null) {
-            resources = resourceService.getResourcesByType(type);
-        } else if (search != null) {
-            resources = resourceService.searchResources(search);
+        if (search != null) {
+            // Searches are ranked and paginated; total is the number of matches across all pages
+            Page<Resource> results = resourceService.searchResources(search, type,
+                    PageRequest.of(Math.max(page, 0), clampSize(size != null ? size : 100)));
+            response.put("resources", results.getContent());
+            response.put("total", results.getTotalElements());
+            response.put("page", results.getNumber());
+            response.put("totalPages", results.getTotalPages());
+        } else if (keyset || size != null) {
+            // Keyset pages, newest first: one more row than asked for tells whether there is a next page
+            int pageSize = clampSize(size != null ? size : 100);
+            List<ResourceSummary> resources = resourceService.getResourcesAfter(type, afterDate, afterId, pageSize + 1);
+            boolean hasMore = resources.size() > pageSize;
+            if (hasMore) {
+                resources = resources.subList(0, pageSize);
+            }
+            ResourceSummary last = resources.isEmpty() ? null : resources.get(resources.size() - 1);
+            response.put("resources", resources);
+            response.put("total", type != null
+                    ? typeCounts.getOrDefault(type, 0L)
+                    : typeCounts.values().stream().mapToLong(Long::longValue).sum());
+            response.put("nextCursor", hasMore ? last.publishDate() + "," + last.id() : null);
         } else {
-            resources = resourceService.getAllResources();
+            List<ResourceSummary> resources = type != null
+                    ? resourceService.getResourcesByType(type)
+                    : resourceService.getAllResources();
+            response.put("resources", resources);
+            response.put("total", resources.size());
         }
         
-        Map<String, Long> typeCounts = resourceService.getTypeCounts();
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("resources", resources);
-        response.put("total", resources.size());
         response.put("typeCounts", typeCounts);
         
         return response;
     }
     
+    private static int clampSize(int size) {
+        return Math.min(Math.max(size, 1), 500);
+    }
+    
     @GetMapping("/featured")
-    public ResponseEntity<List<Resource>> getFeaturedResources() {
+    public ResponseEntity<byte[]> getFeaturedResources(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         log.info("Fetching featured resources");
-        List<Resource> resources = resourceService.getFeaturedResources();
+        CatalogueSnapshots.Snapshot snapshot = catalogueSnapshots.get(CatalogueSnapshots.FEATURED,
+                resourceService::getFeaturedResources);
         // Cache featured resources for 10 minutes
+        return snapshotResponse(snapshot, CacheControl.maxAge(10, TimeUnit.MINUTES), ifNoneMatch, acceptEncoding);
+    }
+    
+    /**
+     * A 304 when the client already has this snapshot, otherwise its bytes, gzipped if the client
+     * accepts that.
+     */
+    private static ResponseEntity<byte[]> snapshotResponse(CatalogueSnapshots.Snapshot snapshot,
+                                                           CacheControl cacheControl,
+                                                           String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = snapshot.servesGzip(acceptEncoding);
+        String etag = gzip ? snapshot.gzipEtag() : snapshot.etag();
+        if (snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip());
+        }
+        return response.body(snapshot.json());
+    }
+    
+    @GetMapping("/trending")
+    public ResponseEntity<List<TrendingResource>> getTrendingResources(
+            @RequestParam(required = false, defaultValue = "10") int limit) {
+        log.info("Fetching trending resources");
+        // Cache trending resources for 1 minute
         return ResponseEntity.ok()
-                .cacheControl(org.springframework.http.CacheControl.maxAge(10, java.util.concurrent.TimeUnit.MINUTES))
-                .body(resources);
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.MINUTES))
+                .body(resourceService.getTrendingResources(Math.min(Math.max(limit, 1), 100)));
     }
     
     @GetMapping("/{id}")
@@ -102,6 +209,58 @@ public class ResourceController {
         }
     }
     
+    /**
+     * Bulk import from a streamed request body: NDJSON (one resource object per line) or CSV with a
+     * header row. Rows are written in batches as they arrive; see ResourceImportService. Progress
+     * is available from /import/status while the upload streams.
+     */
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<Map<String, Object>> importResources(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        
+        ResourceImportService.Format format = contentType.startsWith("text/csv")
+                ? ResourceImportService.Format.CSV
+                : ResourceImportService.Format.NDJSON;
+        log.info("Importing resources from {}", format);
+        
+        Map<String, Object> response = new HashMap<>();
+        ResourceImportService.ImportResult result;
+        try {
+            result = resourceImportService.importResources(body, format);
+        } catch (IOException e) {
+            log.error("Error reading resource import", e);
+            response.put("success", false);
+            response.put("message", "Could not read import: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (result == null) {
+            response.put("success", false);
+            response.put("message", "Another import is in progress");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        
+        response.put("success", result.failed() == 0);
+        response.put("message", "Imported " + result.imported() + " resources, " + result.failed() + " rows failed");
+        response.put("imported", result.imported());
+        response.put("failed", result.failed());
+        response.put("errors", result.errors());
+        response.put("errorsTruncated", result.errorsTruncated());
+        response.put("durationMs", result.durationMs());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Progress of the running bulk import, for clients to poll while their upload streams, and the
+     * result of the last one.
+     */
+    @GetMapping("/import/status")
+    public ResponseEntity<ResourceImportService.ImportStatus> getImportStatus() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(resourceImportService.status());
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<Map<String, Object>> updateResource(
             @PathVariable Long id,
@@ -180,11 +339,10 @@ public class ResourceController {
         
         Map<String, Object> response = new HashMap<>();
         
-        return resourceService.getResourceById(id)
-                .map(resource -> {
-                    resourceService.incrementClicks(id);
+        return resourceService.incrementClicks(id)
+                .map(clicks -> {
                     response.put("success", true);
-                    response.put("clicks", resource.getClicks() + 1);
+                    response.put("clicks", clicks);
                     return ResponseEntity.ok(response);
                 })
                 .orElseGet(() -> {
@@ -195,25 +353,13 @@ public class ResourceController {
     }
     
     @GetMapping("/user/{username}/favorites")
-    public ResponseEntity<List<Map<String, Object>>> getUserFavorites(
+    public ResponseEntity<List<FavoriteSummary>> getUserFavorites(
             @PathVariable String username,
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
         
         log.info("Fetching favorites for user: {}", username);
         
-        List<ResourceFavorite> favorites = resourceService.getUserFavorites(username);
-        
-        List<Map<String, Object>> response = favorites.stream()
-                .map(fav -> {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("favoriteId", fav.getId());
-                    item.put("favoritedAt", fav.getFavoritedAt());
-                    item.put("resource", fav.getResource());
-                    return item;
-                })
-                .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(resourceService.getUserFavorites(username));
     }
     
     @GetMapping("/{id}/favorite-status")
@@ -231,12 +377,30 @@ public class ResourceController {
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping("/favorite-status")
+    public ResponseEntity<Map<String, Object>> getFavoriteStatuses(
+            @RequestParam List<Long> ids,
+            @RequestParam String username,
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        
+        // One lookup for a whole page of resources instead of a request per resource
+        Map<String, Object> response = new HashMap<>();
+        if (ids.size() > 500) {
+            response.put("success", false);
+            response.put("message", "At most 500 ids per request");
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("statuses", resourceService.getFavoriteStatuses(ids, username));
+        
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/admin/all")
-    public ResponseEntity<List<Resource>> getAllResourcesForAdmin(
+    public ResponseEntity<List<ResourceSummary>> getAllResourcesForAdmin(
             @RequestHeader(value = "Authorization", required = false) String authHeader) {
         
         log.info("Admin fetching all resources");
-        List<Resource> resources = resourceService.getAllResources();
+        List<ResourceSummary> resources = resourceService.getAllResources();
         return ResponseEntity.ok(resources);
     }
 }
@@ -2,9 +2,14 @@ package com.example.proxy.controller;
 
 import com.example.proxy.entity.Resource;
 import com.example.proxy.entity.Event;
-import com.example.proxy.repository.ResourceRepository;
-import com.example.proxy.repository.EventRepository;
+import com.example.proxy.service.DocumentSearchService;
+import com.example.proxy.service.SearchService;
+import com.example.proxy.service.SuggestionService;
+import com.example.proxy.service.SuggestionTrie;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -14,39 +19,62 @@ import org.springframework.web.bind.annotation.RestController;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
 public class SearchController {
 
     @Autowired
-    private ResourceRepository resourceRepository;
+    private SearchService searchService;
 
     @Autowired
-    private EventRepository eventRepository;
+    private SuggestionService suggestionService;
+
+    @Autowired
+    private DocumentSearchService documentSearchService;
 
     @GetMapping("/search")
     public ResponseEntity<Map<String, Object>> search(@RequestParam String q,
-                                                      @RequestParam(required = false, defaultValue = "10") int limit) {
-        // Simple DB search for resources
-        List<Resource> resources = resourceRepository.searchByTitleOrDescription(q);
-
-        // For events, do a simple title/description match in-memory if a repo method isn't present
-        List<Event> events;
-        try {
-            events = eventRepository.searchByTitleOrDescription(q);
-        } catch (Exception ex) {
-            // Fallback: scan all events
-            events = eventRepository.findAll().stream()
-                    .filter(e -> (e.getTitle() != null && e.getTitle().toLowerCase().contains(q.toLowerCase()))
-                            || (e.getDescription() != null && e.getDescription().toLowerCase().contains(q.toLowerCase())))
-                    .collect(Collectors.toList());
-        }
+                                                      @RequestParam(required = false, defaultValue = "10") int limit,
+                                                      @RequestParam(required = false, defaultValue = "0") int page) {
+        // Ranked matches, one page at a time; both sources run in parallel under one deadline
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(limit, 1), 100));
+        SearchService.CombinedResults results = searchService.searchAll(q, pageable);
+        Page<Resource> resources = results.resources();
+        Page<Event> events = results.events();
+
+        Map<String, Object> res = new HashMap<>();
+        res.put("resources", resources.getContent());
+        res.put("events", events.getContent());
+        res.put("resourcesTotal", resources.getTotalElements());
+        res.put("eventsTotal", events.getTotalElements());
+        res.put("page", pageable.getPageNumber());
+        // Sources that failed or timed out come back empty rather than failing the whole search
+        res.put("partial", !results.incomplete().isEmpty());
+        res.put("incomplete", results.incomplete());
+        return ResponseEntity.ok(res);
+    }
+
+    @GetMapping("/search/suggest")
+    public ResponseEntity<Map<String, Object>> suggest(@RequestParam String q,
+                                                       @RequestParam(required = false, defaultValue = "8") int limit) {
+        // Served from the in-memory trie, no database round trip per keystroke
+        List<SuggestionTrie.Suggestion> suggestions = suggestionService.suggest(q, limit);
+
+        Map<String, Object> res = new HashMap<>();
+        res.put("suggestions", suggestions);
+        return ResponseEntity.ok(res);
+    }
+
+    @GetMapping("/search/documents")
+    public ResponseEntity<Map<String, Object>> searchDocuments(@RequestParam String q,
+                                                               @RequestParam(required = false, defaultValue = "10") int limit) {
+        // Matches inside the resources' PDFs, with the pages they were found on
+        List<DocumentSearchService.DocumentMatch> results =
+                documentSearchService.search(q, Math.min(Math.max(limit, 1), 50));
 
         Map<String, Object> res = new HashMap<>();
-        res.put("resources", resources.stream().limit(limit).collect(Collectors.toList()));
-        res.put("events", events.stream().limit(limit).collect(Collectors.toList()));
+        res.put("results", results);
         return ResponseEntity.ok(res);
     }
 }
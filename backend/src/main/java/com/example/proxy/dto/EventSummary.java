@@ -0,0 +1,22 @@
+package com.example.proxy.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of an event for listings, with the fields the Event entity serializes and none of
+ * its search columns. Built directly by the repository's constructor queries.
+ */
+public record EventSummary(
+        Long id,
+        String title,
+        String description,
+        LocalDateTime startDate,
+        LocalDateTime endDate,
+        String location,
+        String imageUrl,
+        Integer maxAttendees,
+        Integer currentAttendees,
+        Boolean featured,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+}
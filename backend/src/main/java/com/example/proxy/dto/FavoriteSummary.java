@@ -0,0 +1,20 @@
+package com.example.proxy.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user's favorite with the resource it points at, read in one joined query instead of loading
+ * each favorite's eagerly fetched Resource entity.
+ */
+public record FavoriteSummary(Long favoriteId, LocalDateTime favoritedAt, ResourceSummary resource) {
+
+    // Constructor queries can't nest, so they pass the resource's columns flat
+    public FavoriteSummary(Long favoriteId, LocalDateTime favoritedAt,
+                           Long id, String title, String description, String type, String fileUrl,
+                           String thumbnailUrl, Integer pages, LocalDateTime publishDate, Integer clicks,
+                           Integer favoriteCount, Boolean featured, LocalDateTime createdAt,
+                           LocalDateTime updatedAt) {
+        this(favoriteId, favoritedAt, new ResourceSummary(id, title, description, type, fileUrl, thumbnailUrl,
+                pages, publishDate, clicks, favoriteCount, featured, createdAt, updatedAt));
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.proxy.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a resource for listings, with the fields the Resource entity serializes and
+ * none of its search columns. Built directly by the repository's constructor queries, so listing
+ * resources never loads entities into the persistence context.
+ */
+public record ResourceSummary(
+        Long id,
+        String title,
+        String description,
+        String type,
+        String fileUrl,
+        String thumbnailUrl,
+        Integer pages,
+        LocalDateTime publishDate,
+        Integer clicks,
+        Integer favoriteCount,
+        Boolean featured,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+}
@@ -0,0 +1,9 @@
+package com.example.proxy.dto;
+
+/**
+ * A resource in the trending listing.
+ *
+ * @param score its click and favorite activity, decayed by age; only meaningful relative to other scores
+ */
+public record TrendingResource(ResourceSummary resource, double score) {
+}
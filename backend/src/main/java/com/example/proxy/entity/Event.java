@@ -1,5 +1,7 @@
 package com.example.proxy.entity;
 
+import com.example.proxy.util.TextNormalizer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
@@ -38,6 +40,15 @@ public class Event {
     @Column(nullable = false)
     private Boolean featured = false;
     
+    // Normalized copies of title and description that searches match against (see TextNormalizer)
+    @JsonIgnore
+    @Column(length = 512)
+    private String searchTitle;
+    
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String searchDescription;
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
@@ -48,11 +59,18 @@ public class Event {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        refreshSearchColumns();
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        refreshSearchColumns();
+    }
+    
+    public void refreshSearchColumns() {
+        searchTitle = TextNormalizer.normalize(title);
+        searchDescription = TextNormalizer.normalize(description);
     }
     
     // Getters and Setters
@@ -80,6 +98,14 @@ public class Event {
         this.description = description;
     }
     
+    public String getSearchTitle() {
+        return searchTitle;
+    }
+    
+    public String getSearchDescription() {
+        return searchDescription;
+    }
+    
     public LocalDateTime getStartDate() {
         return startDate;
     }
@@ -1,10 +1,15 @@
 package com.example.proxy.entity;
 
+import com.example.proxy.util.TextNormalizer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "resources")
+@Table(name = "resources", indexes = {
+    @Index(name = "idx_resources_publish_date_id", columnList = "publishDate, id"),
+    @Index(name = "idx_resources_type_publish_date_id", columnList = "type, publishDate, id")
+})
 public class Resource {
     
     @Id
@@ -39,6 +44,15 @@ public class Resource {
     @Column(nullable = false)
     private Boolean featured = false;
     
+    // Normalized copies of title and description that searches match against (see TextNormalizer)
+    @JsonIgnore
+    @Column(length = 512)
+    private String searchTitle;
+    
+    @JsonIgnore
+    @Column(length = 2000)
+    private String searchDescription;
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
@@ -49,11 +63,18 @@ public class Resource {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        refreshSearchColumns();
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        refreshSearchColumns();
+    }
+    
+    public void refreshSearchColumns() {
+        searchTitle = TextNormalizer.normalize(title);
+        searchDescription = TextNormalizer.normalize(description);
     }
     
     // Getters and Setters
@@ -81,6 +102,14 @@ public class Resource {
         this.description = description;
     }
     
+    public String getSearchTitle() {
+        return searchTitle;
+    }
+    
+    public String getSearchDescription() {
+        return searchDescription;
+    }
+    
     public String getType() {
         return type;
     }
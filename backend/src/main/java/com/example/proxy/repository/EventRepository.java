@@ -1,10 +1,16 @@
 package com.example.proxy.repository;
 
+import com.example.proxy.dto.EventSummary;
 import com.example.proxy.entity.Event;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -12,6 +18,17 @@ import java.util.List;
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
     
+    // Constructor expression for EventSummary over an Event aliased e; selects only the listed columns
+    String SUMMARY = "new com.example.proxy.dto.EventSummary(e.id, e.title, e.description, e.startDate, e.endDate, " +
+            "e.location, e.imageUrl, e.maxAttendees, e.currentAttendees, e.featured, e.createdAt, e.updatedAt)";
+    
+    @Query("SELECT " + SUMMARY + " FROM Event e")
+    List<EventSummary> findAllSummaries();
+    
+    // Keyset pages in id order, for rebuilding the in-memory search structures
+    @Query("SELECT " + SUMMARY + " FROM Event e WHERE e.id > :afterId ORDER BY e.id")
+    List<EventSummary> findSummariesAfterId(@Param("afterId") Long afterId, Limit limit);
+    
     List<Event> findByFeaturedTrue();
     
     @Query("SELECT e FROM Event e WHERE e.startDate >= :now ORDER BY e.startDate ASC")
@@ -20,8 +37,31 @@ public interface EventRepository extends JpaRepository<Event, Long> {
     @Query("SELECT e FROM Event e WHERE e.startDate < :now ORDER BY e.startDate DESC")
     List<Event> findPastEvents(LocalDateTime now);
 
-    @Query("SELECT e FROM Event e WHERE " +
-           "LOWER(e.title) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(e.description) LIKE LOWER(CONCAT('%', :search, '%'))")
-    List<Event> searchByTitleOrDescription(@Param("search") String search);
+    // Paged substring search on the normalized columns, title matches first; the search term must be
+    // normalized with TextNormalizer. On PostgreSQL the pg_trgm indexes serve the LIKEs.
+    @Query(value = "SELECT e FROM Event e WHERE " +
+           "e.searchTitle LIKE CONCAT('%', :search, '%') OR " +
+           "e.searchDescription LIKE CONCAT('%', :search, '%') " +
+           "ORDER BY CASE WHEN e.searchTitle LIKE CONCAT('%', :search, '%') THEN 0 ELSE 1 END, e.id",
+           countQuery = "SELECT COUNT(e) FROM Event e WHERE " +
+           "e.searchTitle LIKE CONCAT('%', :search, '%') OR " +
+           "e.searchDescription LIKE CONCAT('%', :search, '%')")
+    Page<Event> searchPaged(@Param("search") String search, Pageable pageable);
+
+    // Full-text search on the generated search_vector column (PostgreSQL, see PostgresSearchSchema)
+    @Query(value = "SELECT e.* FROM events e, websearch_to_tsquery('simple', :search) query " +
+           "WHERE e.search_vector @@ query " +
+           "ORDER BY ts_rank(e.search_vector, query) DESC, e.id",
+           countQuery = "SELECT COUNT(*) FROM events e WHERE e.search_vector @@ websearch_to_tsquery('simple', :search)",
+           nativeQuery = true)
+    Page<Event> fullTextSearch(@Param("search") String search, Pageable pageable);
+
+    // Rows saved before the normalized columns existed; filled in once at startup
+    List<Event> findBySearchTitleIsNull(Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Event e SET e.searchTitle = :searchTitle, e.searchDescription = :searchDescription WHERE e.id = :id")
+    void updateSearchColumns(@Param("id") Long id, @Param("searchTitle") String searchTitle,
+                             @Param("searchDescription") String searchDescription);
 }
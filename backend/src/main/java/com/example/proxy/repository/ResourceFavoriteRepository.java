@@ -1,7 +1,11 @@
 package com.example.proxy.repository;
 
+import com.example.proxy.dto.FavoriteSummary;
 import com.example.proxy.entity.ResourceFavorite;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,11 +14,22 @@ import java.util.Optional;
 @Repository
 public interface ResourceFavoriteRepository extends JpaRepository<ResourceFavorite, Long> {
     
-    List<ResourceFavorite> findByUsername(String username);
+    @Query("SELECT new com.example.proxy.dto.FavoriteSummary(f.id, f.favoritedAt, r.id, r.title, r.description, " +
+           "r.type, r.fileUrl, r.thumbnailUrl, r.pages, r.publishDate, r.clicks, r.favoriteCount, r.featured, " +
+           "r.createdAt, r.updatedAt) FROM ResourceFavorite f JOIN f.resource r WHERE f.username = :username")
+    List<FavoriteSummary> findSummariesByUsername(@Param("username") String username);
     
     Optional<ResourceFavorite> findByResourceIdAndUsername(Long resourceId, String username);
     
     void deleteByResourceIdAndUsername(Long resourceId, String username);
     
     long countByResourceId(Long resourceId);
+    
+    @Query("SELECT f.resource.id FROM ResourceFavorite f WHERE f.username = :username")
+    List<Long> findResourceIdsByUsername(@Param("username") String username);
+    
+    // Returns the number of rows removed, so concurrent toggles agree on who removed the favorite
+    @Modifying
+    @Query("DELETE FROM ResourceFavorite f WHERE f.resource.id = :resourceId AND f.username = :username")
+    int removeFavorite(@Param("resourceId") Long resourceId, @Param("username") String username);
 }
@@ -1,29 +1,107 @@
 package com.example.proxy.repository;
 
+import com.example.proxy.dto.ResourceSummary;
 import com.example.proxy.entity.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ResourceRepository extends JpaRepository<Resource, Long> {
     
-    List<Resource> findByFeaturedTrue();
+    // Constructor expression for ResourceSummary over a Resource aliased r; selects only the listed columns
+    String SUMMARY = "new com.example.proxy.dto.ResourceSummary(r.id, r.title, r.description, r.type, " +
+            "r.fileUrl, r.thumbnailUrl, r.pages, r.publishDate, r.clicks, r.favoriteCount, r.featured, " +
+            "r.createdAt, r.updatedAt)";
     
-    List<Resource> findByType(String type);
+    @Query("SELECT " + SUMMARY + " FROM Resource r")
+    List<ResourceSummary> findAllSummaries();
     
-    @Query("SELECT r FROM Resource r WHERE " +
-           "LOWER(r.title) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(r.description) LIKE LOWER(CONCAT('%', :search, '%'))")
-    List<Resource> searchByTitleOrDescription(@Param("search") String search);
+    @Query("SELECT " + SUMMARY + " FROM Resource r WHERE r.featured = true")
+    List<ResourceSummary> findFeaturedSummaries();
     
-    @Query("SELECT r FROM Resource r WHERE r.type = :type AND " +
-           "(LOWER(r.title) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(r.description) LIKE LOWER(CONCAT('%', :search, '%')))")
-    List<Resource> searchByTypeAndQuery(@Param("type") String type, @Param("search") String search);
+    @Query("SELECT " + SUMMARY + " FROM Resource r WHERE r.type = :type")
+    List<ResourceSummary> findSummariesByType(@Param("type") String type);
+    
+    @Query("SELECT " + SUMMARY + " FROM Resource r WHERE r.id IN :ids")
+    List<ResourceSummary> findSummariesByIds(@Param("ids") Collection<Long> ids);
+    
+    // Keyset pages in id order, for rebuilding the in-memory search structures
+    @Query("SELECT " + SUMMARY + " FROM Resource r WHERE r.id > :afterId ORDER BY r.id")
+    List<ResourceSummary> findSummariesAfterId(@Param("afterId") Long afterId, Limit limit);
+    
+    // Keyset pagination, newest first. Typed and untyped pages are separate queries so each maps to one
+    // range seek on its index: (publish_date, id), or (type, publish_date, id) on Resource.
+    @Query("SELECT " + SUMMARY + " FROM Resource r ORDER BY r.publishDate DESC, r.id DESC")
+    List<ResourceSummary> findFirstPage(Limit limit);
+    
+    @Query("SELECT " + SUMMARY + " FROM Resource r WHERE r.type = :type ORDER BY r.publishDate DESC, r.id DESC")
+    List<ResourceSummary> findFirstPageOfType(@Param("type") String type, Limit limit);
+    
+    @Query("SELECT " + SUMMARY + " FROM Resource r WHERE (r.publishDate, r.id) < (:publishDate, :id) " +
+           "ORDER BY r.publishDate DESC, r.id DESC")
+    List<ResourceSummary> findPageAfter(@Param("publishDate") LocalDateTime publishDate, @Param("id") Long id,
+                                        Limit limit);
+    
+    @Query("SELECT " + SUMMARY + " FROM Resource r WHERE r.type = :type AND (r.publishDate, r.id) < (:publishDate, :id) " +
+           "ORDER BY r.publishDate DESC, r.id DESC")
+    List<ResourceSummary> findPageOfTypeAfter(@Param("type") String type, @Param("publishDate") LocalDateTime publishDate,
+                                              @Param("id") Long id, Limit limit);
+    
+    // Paged substring search on the normalized columns, title matches first; the search term must be
+    // normalized with TextNormalizer. On PostgreSQL the pg_trgm indexes serve the LIKEs.
+    @Query(value = "SELECT r FROM Resource r WHERE " +
+           "(:type IS NULL OR r.type = :type) AND " +
+           "(r.searchTitle LIKE CONCAT('%', :search, '%') OR " +
+           "r.searchDescription LIKE CONCAT('%', :search, '%')) " +
+           "ORDER BY CASE WHEN r.searchTitle LIKE CONCAT('%', :search, '%') THEN 0 ELSE 1 END, r.id",
+           countQuery = "SELECT COUNT(r) FROM Resource r WHERE " +
+           "(:type IS NULL OR r.type = :type) AND " +
+           "(r.searchTitle LIKE CONCAT('%', :search, '%') OR " +
+           "r.searchDescription LIKE CONCAT('%', :search, '%'))")
+    Page<Resource> searchPaged(@Param("search") String search, @Param("type") String type, Pageable pageable);
+    
+    // Full-text search on the generated search_vector column (PostgreSQL, see PostgresSearchSchema)
+    @Query(value = "SELECT r.* FROM resources r, websearch_to_tsquery('simple', :search) query " +
+           "WHERE r.search_vector @@ query AND (CAST(:type AS text) IS NULL OR r.type = :type) " +
+           "ORDER BY ts_rank(r.search_vector, query) DESC, r.id",
+           countQuery = "SELECT COUNT(*) FROM resources r " +
+           "WHERE r.search_vector @@ websearch_to_tsquery('simple', :search) AND (CAST(:type AS text) IS NULL OR r.type = :type)",
+           nativeQuery = true)
+    Page<Resource> fullTextSearch(@Param("search") String search, @Param("type") String type, Pageable pageable);
+    
+    // Relative update in SQL, so concurrent favorites never overwrite each other's count
+    @Modifying
+    @Query("UPDATE Resource r SET r.favoriteCount = r.favoriteCount + :delta " +
+           "WHERE r.id = :id AND r.favoriteCount + :delta >= 0")
+    int adjustFavoriteCount(@Param("id") Long id, @Param("delta") int delta);
+    
+    @Query("SELECT r.favoriteCount FROM Resource r WHERE r.id = :id")
+    Optional<Integer> findFavoriteCount(@Param("id") Long id);
+    
+    // Primary-key lookup of one column; empty when there is no such resource
+    @Query("SELECT COALESCE(r.clicks, 0) FROM Resource r WHERE r.id = :id")
+    Optional<Integer> findClicks(@Param("id") Long id);
+    
+    // Rows saved before the normalized columns existed; filled in once at startup
+    List<Resource> findBySearchTitleIsNull(Limit limit);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE Resource r SET r.searchTitle = :searchTitle, r.searchDescription = :searchDescription WHERE r.id = :id")
+    void updateSearchColumns(@Param("id") Long id, @Param("searchTitle") String searchTitle,
+                             @Param("searchDescription") String searchDescription);
     
     @Query("SELECT r.type, COUNT(r) FROM Resource r GROUP BY r.type")
     List<Object[]> countByType();
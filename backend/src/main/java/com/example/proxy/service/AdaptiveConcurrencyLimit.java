@@ -0,0 +1,107 @@
+package com.example.proxy.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit on concurrent upstream calls for one route, after the Vegas algorithm in Netflix's
+ * concurrency-limits.
+ *
+ * The lowest latency seen is taken as the no-load RTT. Each sample estimates how many requests are
+ * queued upstream as {@code limit * (1 - rttNoLoad / rtt)}: a short queue grows the limit, a long
+ * one shrinks it, and timeouts or dropped connections cut it by 10%. The no-load RTT is re-probed
+ * periodically so the limit can follow a permanent change in upstream latency.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private long rttNoLoadNanos = Long.MAX_VALUE;
+    private int samplesUntilProbe;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        this.samplesUntilProbe = probeInterval(limit);
+    }
+
+    /**
+     * Takes a slot if fewer than {@code limit} calls are in flight. Every acquired slot must be
+     * given back with {@link #release(long, boolean)}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a slot and feeds the call's latency into the limit.
+     *
+     * @param rttNanos time until upstream answered, or -1 when no latency sample applies
+     * @param dropped true when the call timed out or the connection failed
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int inFlightAtStart = inFlight.getAndDecrement();
+        if (dropped) {
+            onDropped();
+        } else if (rttNanos > 0) {
+            onSample(rttNanos, inFlightAtStart);
+        }
+    }
+
+    private synchronized void onDropped() {
+        limit = Math.max(minLimit, (int) (limit * 0.9));
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        if (--samplesUntilProbe <= 0) {
+            // Forget the old baseline so a lasting latency shift isn't read as permanent queueing
+            rttNoLoadNanos = rttNanos;
+            samplesUntilProbe = probeInterval(limit);
+            return;
+        }
+        if (rttNanos < rttNoLoadNanos) {
+            rttNoLoadNanos = rttNanos;
+            return;
+        }
+
+        int current = limit;
+        // An unused limit says nothing about upstream capacity, so don't grow it
+        if (inFlightAtStart * 2 < current) {
+            return;
+        }
+
+        int queue = (int) Math.ceil(current * (1 - (double) rttNoLoadNanos / rttNanos));
+        int log = Math.max(1, (int) Math.log10(current));
+        int alpha = 3 * log;
+        int beta = 6 * log;
+
+        if (queue <= alpha) {
+            limit = Math.min(maxLimit, current + log);
+        } else if (queue >= beta) {
+            limit = Math.max(minLimit, current - log);
+        }
+    }
+
+    private int probeInterval(int limit) {
+        return 30 * Math.max(limit, 10);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.proxy.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Public catalogue responses kept as ready-to-send bytes, plain and gzipped, each with a strong
+ * ETag, so serving one is a memory copy and a revalidation is a string comparison.
+ *
+ * Resource writes drop every snapshot once they commit and the next request builds a fresh one.
+ * Dropping bumps a generation that is part of the key, so a build that raced the commit can only
+ * store its result under a generation nobody asks for any more. Clicks and favorite counts don't
+ * drop snapshots; they catch up when a snapshot expires after resources.catalogue.max-age.
+ */
+@Service
+public class CatalogueSnapshots {
+
+    public static final String ALL = "all";
+    public static final String FEATURED = "featured";
+
+    /**
+     * @param gzip the same body gzipped, null when gzip is turned off
+     */
+    public record Snapshot(byte[] json, byte[] gzip, String etag, String gzipEtag) {
+
+        /**
+         * Whether an If-None-Match header names this snapshot, in either encoding.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            return ifNoneMatch.trim().equals("*") || Arrays.stream(ifNoneMatch.split(","))
+                    .map(tag -> tag.trim().startsWith("W/") ? tag.trim().substring(2) : tag.trim())
+                    .anyMatch(tag -> tag.equals(etag) || tag.equals(gzipEtag));
+        }
+
+        public boolean servesGzip(String acceptEncoding) {
+            return gzip != null && ContentEncodings.isAcceptable("gzip", acceptEncoding);
+        }
+    }
+
+    private record Key(String name, long generation) {}
+
+    private final ObjectMapper objectMapper;
+    private final boolean gzip;
+    private final Cache<Key, Snapshot> snapshots;
+    private final AtomicLong generation = new AtomicLong();
+
+    public CatalogueSnapshots(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${resources.catalogue.max-age:5m}") Duration maxAge,
+                              @Value("${resources.catalogue.gzip:true}") boolean gzip) {
+        this.objectMapper = objectMapper;
+        this.gzip = gzip;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(64)
+                .expireAfterWrite(maxAge)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "resources.catalogue");
+    }
+
+    /**
+     * The snapshot of the named response, serializing the body only if there is none. Concurrent
+     * callers for the same missing snapshot wait for one build instead of each running the queries.
+     *
+     * @param name {@link #ALL}, {@link #FEATURED} or "type:" and a resource type
+     */
+    public Snapshot get(String name, Supplier<Object> body) {
+        return snapshots.get(new Key(name, generation.get()), key -> build(body.get()));
+    }
+
+    /**
+     * Drops every snapshot once the surrounding transaction commits.
+     */
+    public void resourcesChanged() {
+        SearchIndexService.afterCommit(() -> {
+            generation.incrementAndGet();
+            snapshots.invalidateAll();
+        });
+    }
+
+    private Snapshot build(Object body) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize catalogue snapshot", e);
+        }
+        String hash = HexFormat.of().formatHex(sha256(json), 0, 16);
+        return new Snapshot(json, gzip ? gzip(json) : null, "\"" + hash + "\"", "\"" + hash + "-gzip\"");
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
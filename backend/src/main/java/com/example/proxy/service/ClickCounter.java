@@ -0,0 +1,121 @@
+package com.example.proxy.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind counter for resource clicks.
+ *
+ * Clicks are added to a per-resource LongAdder, which spreads concurrent increments over cells
+ * instead of contending on one row lock, and are written out periodically as relative increments
+ * in a single JDBC batch, so no update is lost to a read-modify-write race. Adders are reset, not
+ * removed, when flushed; removing one could drop a click landing in between. Only a deleted
+ * resource's adder is removed, once its update finds no row. A failed flush puts its counts back
+ * for the next attempt, and a clean shutdown flushes what is left.
+ */
+@Service
+public class ClickCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickCounter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SuggestionService suggestionService;
+    private final TrendingResources trendingResources;
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public ClickCounter(JdbcTemplate jdbcTemplate, SuggestionService suggestionService,
+                        TrendingResources trendingResources, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.suggestionService = suggestionService;
+        this.trendingResources = trendingResources;
+
+        Gauge.builder("resources.clicks.pending", this, ClickCounter::pendingTotal)
+                .description("Clicks counted but not yet written to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts one click, returning how many clicks on this resource are waiting to be written.
+     */
+    public long record(Long resourceId) {
+        LongAdder adder = pending.computeIfAbsent(resourceId, id -> new LongAdder());
+        adder.increment();
+        return adder.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${resources.clicks.flush-interval:5s}")
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long clicks = entry.getValue().sumThenReset();
+            if (clicks > 0) {
+                batch.add(new Object[]{clicks, entry.getKey()});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        int[] updated = suggestionService.writingClicks(() -> write(batch));
+        if (updated == null) {
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Long id = (Long) batch.get(i)[1];
+            if (updated[i] != 0) {
+                trendingResources.clicked(id, (Long) batch.get(i)[0]);
+            } else {
+                // The resource is gone, and so is any use for its adder
+                pending.remove(id);
+            }
+        }
+        log.debug("Wrote clicks for {} resources", batch.size());
+    }
+
+    /**
+     * Writes the batch and raises the suggestion weights by it, returning the rows each update
+     * changed. A resource deleted since it was clicked changes none and is passed over. If the
+     * write fails the counts are put back for the next flush and null is returned.
+     */
+    private int[] write(List<Object[]> batch) {
+        int[] updated;
+        try {
+            updated = jdbcTemplate.batchUpdate("UPDATE resources SET clicks = clicks + ? WHERE id = ?", batch);
+        } catch (DataAccessException e) {
+            for (Object[] row : batch) {
+                pending.computeIfAbsent((Long) row[1], id -> new LongAdder()).add((Long) row[0]);
+            }
+            log.warn("Could not write {} resources' clicks, will retry: {}", batch.size(), e.getMessage());
+            return null;
+        }
+        // Drivers that can't tell report Statement.SUCCESS_NO_INFO, which is kept
+        for (int i = 0; i < batch.size(); i++) {
+            if (updated[i] != 0) {
+                suggestionService.addClicks((Long) batch.get(i)[1], (Long) batch.get(i)[0]);
+            }
+        }
+        return updated;
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private long pendingTotal() {
+        return pending.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.proxy.service;
+
+import org.apache.hc.client5.http.entity.DeflateDecompressingEntity;
+import org.apache.hc.client5.http.entity.GzipDecompressingEntity;
+import org.apache.hc.core5.http.HttpEntity;
+
+import java.util.Locale;
+
+/**
+ * Content-Encoding negotiation for proxied responses. Encoded upstream bodies are forwarded as they
+ * are whenever the client accepts the encoding, and only decoded when it doesn't.
+ */
+final class ContentEncodings {
+
+    private ContentEncodings() {
+    }
+
+    /**
+     * Whether a body with this Content-Encoding can be sent to a client that sent this
+     * Accept-Encoding. A missing Accept-Encoding only accepts unencoded bodies: RFC 9110 would allow
+     * anything, but plain HTTP clients that omit the header usually can't decode.
+     */
+    static boolean isAcceptable(String contentEncoding, String acceptEncoding) {
+        String coding = normalize(contentEncoding);
+        if (coding.isEmpty() || coding.equals("identity")) {
+            return true;
+        }
+        if (acceptEncoding == null || coding.contains(",")) {
+            return false;
+        }
+
+        Double wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String name = normalize(params[0]);
+            double q = quality(params);
+            if (name.equals(coding)) {
+                return q > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = q;
+            }
+        }
+        return wildcard != null && wildcard > 0;
+    }
+
+    /**
+     * Wraps the entity so it is decoded while being read, or returns null for encodings the proxy
+     * can't decode.
+     */
+    static HttpEntity decode(HttpEntity entity, String contentEncoding) {
+        return switch (normalize(contentEncoding)) {
+            case "gzip" -> new GzipDecompressingEntity(entity);
+            case "deflate" -> new DeflateDecompressingEntity(entity);
+            default -> null;
+        };
+    }
+
+    private static String normalize(String coding) {
+        if (coding == null) {
+            return "";
+        }
+        String normalized = coding.trim().toLowerCase(Locale.ROOT);
+        return normalized.equals("x-gzip") ? "gzip" : normalized;
+    }
+
+    private static double quality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.proxy.service;
+
+import com.example.proxy.config.DocumentIndexConfig;
+import com.example.proxy.entity.Resource;
+import com.example.proxy.repository.ResourceRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Searches the text inside stored resource PDFs and returns the matching pages with snippets.
+ *
+ * Extraction runs on a small fixed pool, never on a request thread. At most workers + queueCapacity
+ * extractions are pending. A save that finds the queue full is deferred, and a worker that finishes
+ * hands its slot to a deferred save before the rebuild can take it, so saves aren't starved while
+ * the rebuild keeps the queue full. Only postings live in memory; page text stays in the
+ * extractor's disk cache and is read back for the handful of results that need snippets.
+ *
+ * Extractions of the same resource can run concurrently on different workers, and finish in any
+ * order. Each dispatch gets a new generation, and an extraction only updates the index while its
+ * generation is still the resource's latest, so an older save can't overwrite a newer one. Removing a
+ * resource drops its generation, so no extraction still running can add it back.
+ */
+@Service
+public class DocumentSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentSearchService.class);
+
+    private static final int MAX_PAGES_PER_RESULT = 3;
+    private static final int SNIPPET_BEFORE = 60;
+    private static final int SNIPPET_AFTER = 100;
+
+    public record PageMatch(int page, String snippet) {}
+
+    public record DocumentMatch(Resource resource, List<PageMatch> pages) {}
+
+    private final DocumentIndexConfig config;
+    private final FileStorageService fileStorageService;
+    private final ResourceRepository resourceRepository;
+    private final PdfTextExtractor extractor;
+
+    private final InvertedIndex index = new InvertedIndex();
+    private final Map<Long, String> contentHashes = new ConcurrentHashMap<>();
+    // Latest dispatched generation per resource; index updates for a resource happen inside compute on its entry
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+    private final AtomicLong nextGeneration = new AtomicLong();
+    private final ExecutorService workers;
+    private final Semaphore admissions;
+    // Saves that found the queue full, by resource, waiting for the next free slot
+    private final Map<Long, DeferredSave> deferred = new ConcurrentHashMap<>();
+    private final Counter failures;
+
+    public DocumentSearchService(DocumentIndexConfig config, FileStorageService fileStorageService,
+                                 ResourceRepository resourceRepository, ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) throws IOException {
+        this.config = config;
+        this.fileStorageService = fileStorageService;
+        this.resourceRepository = resourceRepository;
+        this.extractor = new PdfTextExtractor(Path.of(config.getCacheDir()).toAbsolutePath(), config.getMaxPages(), objectMapper);
+        this.workers = Executors.newFixedThreadPool(config.getWorkers(),
+                Thread.ofPlatform().name("pdf-text-", 0).daemon().factory());
+        this.admissions = new Semaphore(config.getWorkers() + config.getQueueCapacity());
+
+        Gauge.builder("search.documents.indexed", index, InvertedIndex::size)
+                .description("Resource PDFs whose text is searchable")
+                .register(meterRegistry);
+        Gauge.builder("search.documents.pending", this,
+                        s -> config.getWorkers() + config.getQueueCapacity() - s.admissions.availablePermits()
+                                + s.deferred.size())
+                .description("PDF extractions queued or running")
+                .register(meterRegistry);
+        this.failures = Counter.builder("search.documents.failures")
+                .description("PDFs whose text could not be extracted")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        // Feeds the pool at the pace it drains, so startup never waits on PDF parsing
+        Thread.ofVirtual().name("pdf-text-rebuild").start(() -> {
+            long start = System.currentTimeMillis();
+            for (Resource resource : resourceRepository.findAll()) {
+                try {
+                    admissions.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                dispatch(resource.getId(), resource.getFileUrl());
+            }
+            log.info("Queued text extraction for all resources in {}ms", System.currentTimeMillis() - start);
+        });
+    }
+
+    public void indexResource(Resource resource) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Long id = resource.getId();
+        String fileUrl = resource.getFileUrl();
+        SearchIndexService.afterCommit(() -> {
+            if (admissions.tryAcquire()) {
+                deferred.remove(id);
+                dispatch(id, fileUrl);
+            } else {
+                log.debug("Text extraction queue full, deferring resource {}", id);
+                deferred.put(id, new DeferredSave(fileUrl));
+                // A slot freed since tryAcquire would otherwise sit unused until the next one frees
+                drainDeferred();
+            }
+        });
+    }
+
+    public void removeResource(Long id) {
+        SearchIndexService.afterCommit(() -> generations.compute(id, (key, current) -> {
+            deferred.remove(id);
+            index.remove(id);
+            contentHashes.remove(id);
+            return null;
+        }));
+    }
+
+    @PreDestroy
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Resources whose PDF text matches every word of the query, best first, each with up to three
+     * matching pages.
+     */
+    public List<DocumentMatch> search(String query, int limit) {
+        List<Long> ids = index.search(query, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Resource> byId = resourceRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Resource::getId, Function.identity()));
+        List<Pattern> words = InvertedIndex.tokenize(query).stream()
+                .map(word -> Pattern.compile("(?<![\\p{L}\\p{M}\\p{N}])" + Pattern.quote(word),
+                        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE))
+                .toList();
+
+        List<DocumentMatch> results = new ArrayList<>();
+        for (Long id : ids) {
+            Resource resource = byId.get(id);
+            if (resource != null) {
+                results.add(new DocumentMatch(resource, matchingPages(id, words)));
+            }
+        }
+        return results;
+    }
+
+    private record DeferredSave(String fileUrl) {}
+
+    private void dispatch(Long id, String fileUrl) {
+        long generation = nextGeneration.incrementAndGet();
+        generations.put(id, generation);
+        submit(id, fileUrl, generation);
+    }
+
+    private void submit(Long id, String fileUrl, long generation) {
+        try {
+            workers.execute(() -> {
+                try {
+                    extract(id, fileUrl, generation);
+                } finally {
+                    // The slot passes straight to a deferred save, ahead of the rebuild waiting in acquire()
+                    if (!dispatchDeferred()) {
+                        admissions.release();
+                        drainDeferred();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            admissions.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Dispatches one deferred save on a slot the caller already holds. Returns false, keeping the
+     * slot with the caller, when nothing is deferred. The save is taken and its generation assigned
+     * inside compute on the resource's entry, so a removal can't slip in between and be undone.
+     */
+    private boolean dispatchDeferred() {
+        for (Long id : deferred.keySet()) {
+            long generation = nextGeneration.incrementAndGet();
+            DeferredSave[] taken = new DeferredSave[1];
+            generations.compute(id, (key, latest) -> {
+                taken[0] = deferred.remove(id);
+                return taken[0] != null ? generation : latest;
+            });
+            if (taken[0] != null) {
+                submit(id, taken[0].fileUrl(), generation);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes free slots for deferred saves until either runs out. tryAcquire() barges past the
+     * rebuild's blocked acquire(), so deferred saves still go first.
+     */
+    private void drainDeferred() {
+        while (!deferred.isEmpty() && admissions.tryAcquire()) {
+            if (!dispatchDeferred()) {
+                admissions.release();
+            }
+        }
+    }
+
+    private void extract(Long id, String fileUrl, long generation) {
+        if (!Objects.equals(generations.get(id), generation)) {
+            // Superseded by a later save, or removed, while queued
+            return;
+        }
+        Optional<Path> file = fileStorageService.resolveStoredFile(fileUrl)
+                .filter(path -> path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf"));
+        if (file.isEmpty()) {
+            // External link or no longer one of our PDFs
+            publish(id, generation, () -> {
+                index.remove(id);
+                contentHashes.remove(id);
+            });
+            return;
+        }
+        try {
+            String hash = PdfTextExtractor.contentHash(file.get());
+            if (hash.equals(contentHashes.get(id))) {
+                return;
+            }
+            List<String> pages = extractor.extract(file.get(), hash);
+            boolean published = publish(id, generation, () -> {
+                index.put(id, null, String.join("\n", pages));
+                contentHashes.put(id, hash);
+            });
+            if (published) {
+                log.debug("Indexed {} pages of {} for resource {}", pages.size(), file.get().getFileName(), id);
+            }
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            log.warn("Could not extract text from {} for resource {}: {}", file.get(), id, e.toString());
+        }
+    }
+
+    /**
+     * Applies an extraction's index update if its generation is still the resource's latest.
+     */
+    private boolean publish(Long id, long generation, Runnable update) {
+        boolean[] current = new boolean[1];
+        generations.computeIfPresent(id, (key, latest) -> {
+            if (latest == generation) {
+                update.run();
+                current[0] = true;
+            }
+            return latest;
+        });
+        return current[0];
+    }
+
+    private List<PageMatch> matchingPages(Long id, List<Pattern> words) {
+        String hash = contentHashes.get(id);
+        List<String> pages;
+        try {
+            pages = hash != null ? extractor.cached(hash) : null;
+        } catch (IOException e) {
+            log.warn("Could not read extracted text for resource {}: {}", id, e.toString());
+            return List.of();
+        }
+        if (pages == null) {
+            return List.of();
+        }
+
+        List<PageMatch> matches = new ArrayList<>();
+        for (int i = 0; i < pages.size() && matches.size() < MAX_PAGES_PER_RESULT; i++) {
+            String text = pages.get(i);
+            for (Pattern word : words) {
+                Matcher matcher = word.matcher(text);
+                if (matcher.find()) {
+                    matches.add(new PageMatch(i + 1, snippet(text, matcher.start())));
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static String snippet(String text, int position) {
+        int from = Math.max(0, position - SNIPPET_BEFORE);
+        int to = Math.min(text.length(), position + SNIPPET_AFTER);
+        String snippet = text.substring(from, to).replaceAll("\\s+", " ").trim();
+        return (from > 0 ? "…" : "") + snippet + (to < text.length() ? "…" : "");
+    }
+}
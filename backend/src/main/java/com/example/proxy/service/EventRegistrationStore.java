@@ -0,0 +1,415 @@
+package com.example.proxy.service;
+
+import com.example.proxy.config.EventRegistrationConfig;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Capacity-checked event registrations for the /proxy/api/events endpoints.
+ *
+ * Seats are reserved with a compare-and-set on each event's taken count, so concurrent
+ * registrations can never overbook an event. Every change is appended to a write-ahead log before
+ * it becomes visible. The log is periodically compacted into a snapshot, and on startup the
+ * snapshot is loaded and the log replayed on top of it. A username to events index answers
+ * per-user lookups without scanning every event.
+ */
+@Service
+public class EventRegistrationStore {
+
+    private static final Logger log = LoggerFactory.getLogger(EventRegistrationStore.class);
+
+    private static final String SNAPSHOT_FILE = "registrations.snapshot.json";
+    private static final String WAL_FILE = "registrations.wal";
+    // Log being compacted; only left behind if the process died before the snapshot was written
+    private static final String COMPACTING_WAL_FILE = "registrations.wal.compacting";
+
+    private static final String OP_REGISTER = "register";
+    private static final String OP_CANCEL = "cancel";
+
+    public enum Outcome { REGISTERED, NOT_FOUND, ALREADY_REGISTERED, FULL }
+
+    private final Map<String, EventSlots> events = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> eventsByUser = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path dataDir;
+    private final boolean fsync;
+
+    // Changes hold the read lock from their log record until the maps show them; snapshot() holds
+    // the write lock, so the state it copies always matches the log it rotates out
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final ReentrantLock walLock = new ReentrantLock();
+    private FileChannel wal;
+    private int walRecords;
+
+    public EventRegistrationStore(EventRegistrationConfig config) {
+        this.dataDir = Path.of(config.getDataDir());
+        this.fsync = config.isFsync();
+        try {
+            Files.createDirectories(dataDir);
+            recover();
+            this.wal = openWal();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not recover event registrations from " + dataDir.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Makes an event available for registration with the given number of seats.
+     */
+    public void defineEvent(String eventId, int capacity) {
+        events.computeIfAbsent(eventId, id -> new EventSlots()).capacity = capacity;
+    }
+
+    public Result register(String eventId, String username, String email, String fullName) {
+        EventSlots slots = events.get(eventId);
+        if (slots == null || !slots.isDefined()) {
+            return new Result(Outcome.NOT_FOUND, null);
+        }
+        if (slots.registrations.containsKey(username)) {
+            return new Result(Outcome.ALREADY_REGISTERED, slots.registrations.get(username));
+        }
+        if (!slots.tryReserve()) {
+            return new Result(Outcome.FULL, null);
+        }
+
+        Registration registration = new Registration(eventId, username, email, fullName, new Date().toString(), "confirmed");
+        boolean added = false;
+        stateLock.readLock().lock();
+        try {
+            // Logging inside the map's per-key lock keeps the log in the same order as the changes
+            Registration stored = slots.registrations.computeIfAbsent(username, u -> {
+                append(new LogEntry(OP_REGISTER, eventId, username, registration));
+                indexAdd(username, eventId);
+                return registration;
+            });
+            added = stored == registration;
+        } finally {
+            stateLock.readLock().unlock();
+            if (!added) {
+                slots.taken.decrementAndGet();
+            }
+        }
+        return added
+                ? new Result(Outcome.REGISTERED, registration)
+                : new Result(Outcome.ALREADY_REGISTERED, slots.registrations.get(username));
+    }
+
+    /**
+     * Cancels a registration and frees its seat. Returns false if there was nothing to cancel.
+     */
+    public boolean cancel(String eventId, String username) {
+        EventSlots slots = events.get(eventId);
+        if (slots == null) {
+            return false;
+        }
+        boolean[] removed = {false};
+        stateLock.readLock().lock();
+        try {
+            slots.registrations.computeIfPresent(username, (u, registration) -> {
+                append(new LogEntry(OP_CANCEL, eventId, username, null));
+                indexRemove(username, eventId);
+                removed[0] = true;
+                return null;
+            });
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        if (removed[0]) {
+            slots.taken.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    public boolean isDefined(String eventId) {
+        EventSlots slots = events.get(eventId);
+        return slots != null && slots.isDefined();
+    }
+
+    /**
+     * Ids of every event open for registration.
+     */
+    public List<String> eventIds() {
+        return events.entrySet().stream()
+                .filter(entry -> entry.getValue().isDefined())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    public int getCapacity(String eventId) {
+        EventSlots slots = events.get(eventId);
+        return slots != null ? Math.max(slots.capacity, 0) : 0;
+    }
+
+    public int getRegistrationCount(String eventId) {
+        EventSlots slots = events.get(eventId);
+        return slots != null ? slots.registrations.size() : 0;
+    }
+
+    public List<Registration> getRegistrations(String eventId) {
+        EventSlots slots = events.get(eventId);
+        return slots != null ? new ArrayList<>(slots.registrations.values()) : new ArrayList<>();
+    }
+
+    public List<Registration> getUserRegistrations(String username) {
+        List<Registration> registrations = new ArrayList<>();
+        for (String eventId : eventsByUser.getOrDefault(username, Set.of())) {
+            EventSlots slots = events.get(eventId);
+            Registration registration = slots != null && slots.isDefined() ? slots.registrations.get(username) : null;
+            if (registration != null) {
+                registrations.add(registration);
+            }
+        }
+        return registrations;
+    }
+
+    private void indexAdd(String username, String eventId) {
+        eventsByUser.compute(username, (u, eventIds) -> {
+            Set<String> updated = eventIds != null ? eventIds : ConcurrentHashMap.newKeySet();
+            updated.add(eventId);
+            return updated;
+        });
+    }
+
+    private void indexRemove(String username, String eventId) {
+        eventsByUser.computeIfPresent(username, (u, eventIds) -> {
+            eventIds.remove(eventId);
+            return eventIds.isEmpty() ? null : eventIds;
+        });
+    }
+
+    private void append(LogEntry entry) {
+        walLock.lock();
+        try {
+            ByteBuffer line = ByteBuffer.wrap((objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                wal.write(line);
+            }
+            if (fsync) {
+                wal.force(false);
+            }
+            walRecords++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write event registration log", e);
+        } finally {
+            walLock.unlock();
+        }
+    }
+
+    /**
+     * Compacts the write-ahead log into a snapshot.
+     *
+     * The state is copied and the log switched to a fresh file while no change is in flight: every
+     * change logged to the old file is in the copy, and every change missing from the copy goes to
+     * the new file. The snapshot is then written outside the lock and the old log deleted.
+     */
+    @Scheduled(fixedDelayString = "${events.registrations.snapshot-interval:5m}")
+    public void snapshot() {
+        List<Registration> state = new ArrayList<>();
+        stateLock.writeLock().lock();
+        walLock.lock();
+        try {
+            if (walRecords == 0) {
+                return;
+            }
+            events.values().forEach(slots -> state.addAll(slots.registrations.values()));
+            wal.close();
+            rotateWal();
+            wal = openWal();
+            walRecords = 0;
+        } catch (IOException e) {
+            log.error("Could not rotate event registration log", e);
+            return;
+        } finally {
+            walLock.unlock();
+            stateLock.writeLock().unlock();
+        }
+
+        try {
+            Path temp = dataDir.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ByteBuffer.wrap(objectMapper.writeValueAsBytes(state));
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                out.force(true);
+            }
+            Files.move(temp, dataDir.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(dataDir.resolve(COMPACTING_WAL_FILE));
+            log.info("Snapshotted {} event registrations", state.size());
+        } catch (IOException e) {
+            // The compacting log is kept, so recovery still sees every change
+            log.error("Could not write event registration snapshot", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        snapshot();
+        walLock.lock();
+        try {
+            wal.close();
+        } finally {
+            walLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the current log aside for compaction. If an earlier compaction failed its log is still
+     * there, so the current records are added to it rather than replacing it.
+     */
+    private void rotateWal() throws IOException {
+        Path current = dataDir.resolve(WAL_FILE);
+        Path compacting = dataDir.resolve(COMPACTING_WAL_FILE);
+        if (!Files.exists(compacting)) {
+            Files.move(current, compacting, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+        try (FileChannel in = FileChannel.open(current, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(compacting, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = 0;
+            while (position < in.size()) {
+                position += in.transferTo(position, in.size() - position, out);
+            }
+            out.force(false);
+        }
+        Files.delete(current);
+    }
+
+    private FileChannel openWal() throws IOException {
+        return FileChannel.open(dataDir.resolve(WAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void recover() throws IOException {
+        long start = System.currentTimeMillis();
+
+        Path snapshot = dataDir.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            List<Registration> registrations = objectMapper.readValue(snapshot.toFile(), new TypeReference<>() {});
+            registrations.forEach(this::applyRegister);
+        }
+        // Replaying is idempotent, so a compacting log already covered by the snapshot is harmless
+        walRecords = replay(dataDir.resolve(COMPACTING_WAL_FILE)) + replay(dataDir.resolve(WAL_FILE));
+
+        int total = events.values().stream().mapToInt(slots -> slots.registrations.size()).sum();
+        log.info("Recovered {} event registrations ({} log records) in {}ms",
+                total, walRecords, System.currentTimeMillis() - start);
+    }
+
+    private int replay(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                LogEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, LogEntry.class);
+                } catch (IOException e) {
+                    // A torn last line from a crash mid-write; the change was never acknowledged
+                    log.warn("Skipping unreadable record in {}: {}", file.getFileName(), e.getMessage());
+                    continue;
+                }
+                if (OP_REGISTER.equals(entry.op())) {
+                    applyRegister(entry.registration());
+                } else if (OP_CANCEL.equals(entry.op())) {
+                    applyCancel(entry.eventId(), entry.username());
+                }
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private void applyRegister(Registration registration) {
+        // Recovered events stay undefined until defineEvent sets their capacity
+        EventSlots slots = events.computeIfAbsent(registration.eventId(), id -> new EventSlots());
+        if (slots.registrations.put(registration.username(), registration) == null) {
+            slots.taken.incrementAndGet();
+        }
+        indexAdd(registration.username(), registration.eventId());
+    }
+
+    private void applyCancel(String eventId, String username) {
+        EventSlots slots = events.get(eventId);
+        if (slots != null && slots.registrations.remove(username) != null) {
+            slots.taken.decrementAndGet();
+            indexRemove(username, eventId);
+        }
+    }
+
+    private static class EventSlots {
+
+        private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+        private final AtomicInteger taken = new AtomicInteger(); // seats reserved, including ones being registered
+        private volatile int capacity = -1; // -1 until the event is defined
+
+        boolean isDefined() {
+            return capacity >= 0;
+        }
+
+        boolean tryReserve() {
+            while (true) {
+                int current = taken.get();
+                if (current >= capacity) {
+                    return false;
+                }
+                if (taken.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    public record Result(Outcome outcome, Registration registration) {
+    }
+
+    public record Registration(String eventId, String username, String email, String fullName,
+                               String registeredAt, String status) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("username", username);
+            map.put("email", email);
+            map.put("fullName", fullName);
+            map.put("registeredAt", registeredAt);
+            map.put("status", status);
+            return map;
+        }
+    }
+
+    private record LogEntry(String op, String eventId, String username, Registration registration) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.proxy.service;
 
+import com.example.proxy.dto.EventSummary;
 import com.example.proxy.entity.Event;
 import com.example.proxy.entity.EventRegistration;
 import com.example.proxy.repository.EventRegistrationRepository;
@@ -22,15 +23,24 @@ public class EventService {
     
     private final EventRepository eventRepository;
     private final EventRegistrationRepository registrationRepository;
+    private final SearchIndexService searchIndexService;
+    private final SuggestionService suggestionService;
+    private final SearchResultCache searchResultCache;
     
     public EventService(EventRepository eventRepository, 
-                       EventRegistrationRepository registrationRepository) {
+                       EventRegistrationRepository registrationRepository,
+                       SearchIndexService searchIndexService,
+                       SuggestionService suggestionService,
+                       SearchResultCache searchResultCache) {
         this.eventRepository = eventRepository;
         this.registrationRepository = registrationRepository;
+        this.searchIndexService = searchIndexService;
+        this.suggestionService = suggestionService;
+        this.searchResultCache = searchResultCache;
     }
     
-    public List<Event> getAllEvents() {
-        return eventRepository.findAll();
+    public List<EventSummary> getAllEvents() {
+        return eventRepository.findAllSummaries();
     }
     
     public List<Event> getFeaturedEvents() {
@@ -50,11 +60,28 @@ public class EventService {
     }
     
     public Event saveEvent(Event event) {
-        return eventRepository.save(event);
+        String before = event.getId() != null ? searchableText(event.getId()) : null;
+        Event saved = eventRepository.save(event);
+        searchIndexService.indexEvent(saved);
+        suggestionService.indexEvent(saved);
+        searchResultCache.eventChanged(saved.getId(), before,
+                SearchResultCache.searchableText(saved.getTitle(), saved.getDescription()));
+        return saved;
     }
     
     public void deleteEvent(Long id) {
+        String before = searchableText(id);
         eventRepository.deleteById(id);
+        searchIndexService.removeEvent(id);
+        suggestionService.removeEvent(id);
+        searchResultCache.eventChanged(id, before, null);
+    }
+    
+    // Text of the stored version, read before a write replaces it
+    private String searchableText(Long id) {
+        return eventRepository.findById(id)
+                .map(event -> SearchResultCache.searchableText(event.getTitle(), event.getDescription()))
+                .orElse(null);
     }
     
     @Transactional
@@ -11,10 +11,13 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -227,4 +230,29 @@ public class FileStorageService {
         // Files in static/resources will be served at /resources/<path>
         return "/resources/" + filePath;
     }
+    
+    /**
+     * Map a file URL produced by getFileUrl (absolute or relative) back to the stored file, if it
+     * is one of ours and still exists
+     */
+    public Optional<Path> resolveStoredFile(String fileUrl) {
+        if (fileUrl == null) {
+            return Optional.empty();
+        }
+        int start = fileUrl.indexOf("/resources/");
+        if (start < 0) {
+            return Optional.empty();
+        }
+        String relative = fileUrl.substring(start + "/resources/".length());
+        int query = relative.indexOf('?');
+        if (query >= 0) {
+            relative = relative.substring(0, query);
+        }
+        Path filePath = this.fileStorageLocation
+                .resolve(URLDecoder.decode(relative, StandardCharsets.UTF_8)).normalize();
+        if (!filePath.startsWith(this.fileStorageLocation) || !Files.isRegularFile(filePath)) {
+            return Optional.empty();
+        }
+        return Optional.of(filePath);
+    }
 }
@@ -0,0 +1,183 @@
+package com.example.proxy.service;
+
+import com.example.proxy.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over a title and a body per document, ranked with BM25.
+ *
+ * Text goes through {@link TextNormalizer} and is split on anything that isn't a letter, combining
+ * mark or digit, so Devanagari words keep their vowel signs. Title terms count twice. Every query term must match a
+ * document, either as a whole word or, if it is at least MIN_PREFIX_LENGTH characters long, as the
+ * prefix of one; prefix-only matches score lower so exact words rank first. Shorter terms only match
+ * whole words, since a one- or two-letter prefix expands to a large part of the vocabulary. A prefix
+ * expands to every word it starts, so results and totals are complete. Lookups only touch the
+ * postings of the query terms, so search cost follows the number of matches rather than the number
+ * of documents.
+ */
+public class InvertedIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{M}\\p{N}]+");
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 2;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, Integer> docLengths = new HashMap<>();
+    private final Map<Long, Set<String>> docTerms = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long totalLength;
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : TOKEN_SEPARATOR.split(TextNormalizer.normalize(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Adds a document, replacing any earlier version with the same id.
+     */
+    public void put(long id, String title, String body) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String token : tokenize(title)) {
+            frequencies.merge(token, TITLE_WEIGHT, Integer::sum);
+            length += TITLE_WEIGHT;
+        }
+        for (String token : tokenize(body)) {
+            frequencies.merge(token, 1, Integer::sum);
+            length++;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new HashMap<>()).put(id, entry.getValue());
+            }
+            docLengths.put(id, length);
+            docTerms.put(id, frequencies.keySet());
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(long id) {
+        Set<String> terms = docTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> docs = postings.get(term);
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= docLengths.remove(id);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docLengths.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of documents matching every term of the query, best first.
+     *
+     * @param limit maximum number of ids, or 0 for all matches
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            int docCount = docLengths.size();
+            if (docCount == 0) {
+                return List.of();
+            }
+            double avgLength = (double) totalLength / docCount;
+
+            for (String term : terms) {
+                Map<Long, Double> termScores = scoreTerm(term, docCount, avgLength);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit > 0 ? limit : Long.MAX_VALUE)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * BM25 score of one query term for every document containing it as a word, or as a word prefix
+     * if the term is long enough.
+     */
+    private Map<Long, Double> scoreTerm(String term, int docCount, double avgLength) {
+        Map<Long, Double> scores = new HashMap<>();
+        Map<String, Map<Long, Integer>> matches = term.length() >= MIN_PREFIX_LENGTH
+                ? postings.subMap(term, true, term + Character.MAX_VALUE, true)
+                : postings.subMap(term, true, term, true);
+        for (Map.Entry<String, Map<Long, Integer>> entry : matches.entrySet()) {
+            Map<Long, Integer> docs = entry.getValue();
+            double weight = entry.getKey().equals(term) ? 1 : PREFIX_WEIGHT;
+            double idf = Math.log(1 + (docCount - docs.size() + 0.5) / (docs.size() + 0.5));
+            for (Map.Entry<Long, Integer> doc : docs.entrySet()) {
+                int tf = doc.getValue();
+                double norm = K1 * (1 - B + B * docLengths.get(doc.getKey()) / avgLength);
+                double score = weight * idf * tf * (K1 + 1) / (tf + norm);
+                scores.merge(doc.getKey(), score, Math::max);
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.proxy.service;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Recent upstream latency for one route, used to pick the hedge delay.
+ *
+ * Samples go into an HdrHistogram {@link Recorder}. Once per window the interval histogram is
+ * swapped out and the percentile recomputed, so the delay follows the route's recent latency
+ * rather than its all-time history. Windows with too few samples keep the previous value.
+ */
+public class LatencyTracker {
+
+    private static final long MIN_SAMPLES = 20;
+
+    private final Recorder recorder = new Recorder(2);
+    private final double percentile;
+    private final long windowNanos;
+
+    private Histogram interval;
+    private volatile long rolledAt = System.nanoTime();
+    private volatile long percentileNanos = -1;
+
+    public LatencyTracker(double percentile, long windowNanos) {
+        this.percentile = percentile;
+        this.windowNanos = windowNanos;
+    }
+
+    public void record(long nanos) {
+        recorder.recordValue(Math.max(nanos, 1));
+    }
+
+    /**
+     * The configured percentile of recent latencies in nanoseconds, or -1 until a window has
+     * collected enough samples.
+     */
+    public long getPercentileNanos() {
+        long now = System.nanoTime();
+        if (now - rolledAt >= windowNanos) {
+            roll(now);
+        }
+        return percentileNanos;
+    }
+
+    private synchronized void roll(long now) {
+        if (now - rolledAt < windowNanos) {
+            return;
+        }
+        interval = recorder.getIntervalHistogram(interval);
+        rolledAt = now;
+        if (interval.getTotalCount() >= MIN_SAMPLES) {
+            percentileNanos = interval.getValueAtPercentile(percentile);
+        }
+    }
+}
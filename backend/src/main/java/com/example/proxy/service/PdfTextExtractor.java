@@ -0,0 +1,105 @@
+package com.example.proxy.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Pulls the text out of a PDF one page at a time, with a disk cache in front of PDFBox.
+ *
+ * Cached text is keyed by the SHA-256 of the file's bytes rather than its name, so a restart,
+ * a renamed file or two resources sharing a file never parse the same content twice, and a
+ * replaced file is never served stale text.
+ */
+public class PdfTextExtractor {
+
+    private static final TypeReference<List<String>> PAGES = new TypeReference<>() {};
+
+    private final Path cacheDir;
+    private final int maxPages;
+    private final ObjectMapper objectMapper;
+
+    public PdfTextExtractor(Path cacheDir, int maxPages, ObjectMapper objectMapper) throws IOException {
+        this.cacheDir = cacheDir;
+        this.maxPages = maxPages;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(cacheDir);
+    }
+
+    public static String contentHash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Text of each page, first page first, parsed on a cache miss.
+     */
+    public List<String> extract(Path file, String hash) throws IOException {
+        List<String> cached = cached(hash);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> pages = new ArrayList<>();
+        try (PDDocument document = Loader.loadPDF(file.toFile())) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            int pageCount = Math.min(document.getNumberOfPages(), maxPages);
+            for (int page = 1; page <= pageCount; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                pages.add(stripper.getText(document));
+            }
+        }
+
+        // Written aside and moved into place so a crash never leaves a truncated cache file
+        Path target = cacheFile(hash);
+        Path tmp = Files.createTempFile(cacheDir, hash, ".tmp");
+        try {
+            objectMapper.writeValue(tmp.toFile(), pages);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return pages;
+    }
+
+    /**
+     * Previously extracted pages for this content, or null when it hasn't been extracted.
+     */
+    public List<String> cached(String hash) throws IOException {
+        Path file = cacheFile(hash);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return objectMapper.readValue(file.toFile(), PAGES);
+    }
+
+    private Path cacheFile(String hash) {
+        return cacheDir.resolve(hash + ".json");
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.proxy.service;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One proxied request's hold on its client response and the upstream requests sent for it.
+ *
+ * An async request that times out or fails is finished by the container while the proxy thread may
+ * still be reading from upstream, and the container can then recycle the response for another
+ * request. {@link #complete()} cancels the upstream requests and closes off the response: status
+ * and header changes are dropped after it and body writes fail, so the proxy thread stops at its
+ * next write. Writes and completion take the same lock, so once complete() returns no write is in
+ * progress. It is a ReentrantLock rather than synchronized so a virtual thread blocked writing to a
+ * slow client doesn't pin its carrier.
+ */
+public class ProxyExchange {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final HttpServletResponse response;
+    // Guarded by lock
+    private final List<HttpUriRequestBase> upstreamRequests = new ArrayList<>();
+    private volatile boolean completed;
+
+    public ProxyExchange(HttpServletResponse response) {
+        this.response = new GuardedResponse(response);
+    }
+
+    /**
+     * The client response, which stops accepting output once the exchange is complete.
+     */
+    public HttpServletResponse response() {
+        return response;
+    }
+
+    /**
+     * Registers an upstream request to cancel on completion, cancelling it straight away if the
+     * exchange is already complete.
+     */
+    void track(HttpUriRequestBase upstreamRequest) {
+        lock.lock();
+        try {
+            if (!completed) {
+                upstreamRequests.add(upstreamRequest);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        upstreamRequest.cancel();
+    }
+
+    /**
+     * Ends the exchange: pending upstream requests are cancelled and the response takes no more
+     * output. Safe to call more than once.
+     */
+    public void complete() {
+        List<HttpUriRequestBase> cancelled;
+        lock.lock();
+        try {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            cancelled = new ArrayList<>(upstreamRequests);
+            upstreamRequests.clear();
+        } finally {
+            lock.unlock();
+        }
+        cancelled.forEach(HttpUriRequestBase::cancel);
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    private void write(IOAction action) throws IOException {
+        lock.lock();
+        try {
+            if (completed) {
+                throw new IOException("Proxied request already completed");
+            }
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(Runnable action) {
+        lock.lock();
+        try {
+            if (!completed) {
+                action.run();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private final class GuardedResponse extends HttpServletResponseWrapper {
+
+        private ServletOutputStream out;
+
+        GuardedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            update(() -> super.setStatus(sc));
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            update(() -> super.setHeader(name, value));
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            update(() -> super.addHeader(name, value));
+        }
+
+        @Override
+        public void setContentType(String type) {
+            update(() -> super.setContentType(type));
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            update(() -> super.setContentLength(len));
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            update(() -> super.setContentLengthLong(len));
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            write(() -> super.sendError(sc));
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            write(() -> super.sendError(sc, msg));
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            write(super::flushBuffer);
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            throw new IllegalStateException("Proxied responses are written through getOutputStream()");
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                out = new GuardedOutputStream(super.getOutputStream());
+            }
+            return out;
+        }
+    }
+
+    private final class GuardedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+
+        GuardedOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ProxyExchange.this.write(() -> out.write(b));
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ProxyExchange.this.write(() -> out.write(b, off, len));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ProxyExchange.this.write(out::flush);
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+}
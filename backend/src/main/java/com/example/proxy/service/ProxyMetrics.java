@@ -0,0 +1,85 @@
+package com.example.proxy.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency timers for the /proxy/** pass-through, published through Micrometer and
+ * /actuator/metrics.
+ *
+ * Each timer keeps an HdrHistogram-backed percentile histogram, so p50/p90/p99 are available per
+ * route and status class and the buckets can be aggregated across instances. Call counts double as
+ * throughput.
+ */
+@Service
+public class ProxyMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public ProxyMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Time to open a new upstream connection, TLS handshake included. Reused connections skip it.
+     */
+    public void recordConnect(String route, long nanos) {
+        timer("proxy.upstream.connect", "Time to open a new upstream connection", "route", route, null, null)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time from sending the request until upstream's response headers arrived.
+     */
+    public void recordFirstByte(String route, int status, long nanos) {
+        timer("proxy.upstream.first.byte", "Time until upstream response headers arrived", "route", route,
+                "status", statusClass(status)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Whole upstream exchange, until the last body byte was passed to the client. Calls that failed
+     * before upstream answered are tagged status=error.
+     */
+    public void recordTotal(String route, int status, long nanos) {
+        timer("proxy.upstream.total", "Time for the whole upstream exchange", "route", route,
+                "status", status > 0 ? statusClass(status) : "error").record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent waiting for a connection from the pool, per upstream host.
+     */
+    public void recordLeaseWait(String host, long nanos) {
+        timer("proxy.upstream.pool.lease", "Time waiting for a pooled upstream connection", "host", host, null, null)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private String statusClass(int status) {
+        return status / 100 + "xx";
+    }
+
+    private Timer timer(String name, String description, String key1, String value1, String key2, String value2) {
+        String id = name + '|' + value1 + '|' + value2;
+        return timers.computeIfAbsent(id, k -> {
+            Timer.Builder builder = Timer.builder(name)
+                    .description(description)
+                    .tag(key1, value1)
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMinutes(2));
+            if (key2 != null) {
+                builder.tag(key2, value2);
+            }
+            return builder.register(meterRegistry);
+        });
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.proxy.service;
+
+import com.example.proxy.config.ProxyConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.springframework.stereotype.Service;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Shared in-process cache for proxied GET responses.
+ *
+ * Follows the upstream's Cache-Control/Expires for freshness and keeps ETag/Last-Modified so stale
+ * entries can be revalidated with a conditional request. Entries are weighed by body size and
+ * evicted with W-TinyLFU once the configured byte budget is reached.
+ */
+@Service
+public class ProxyResponseCache {
+
+    // Headers describing the connection or the individual exchange rather than the representation
+    private static final Set<String> UNCACHED_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer",
+            "transfer-encoding", "upgrade", "content-length", "set-cookie", "age");
+
+    private final Cache<String, CachedResponse> cache;
+    private final long maxEntryBytes;
+    private final Counter revalidatedCounter;
+
+    public ProxyResponseCache(ProxyConfig proxyConfig, MeterRegistry meterRegistry) {
+        this.maxEntryBytes = proxyConfig.getCacheMaxEntrySize().toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(proxyConfig.getCacheMaxSize().toBytes())
+                .weigher((String key, CachedResponse value) -> value.weight())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "proxy.responses");
+        this.revalidatedCounter = Counter.builder("proxy.responses.revalidated")
+                .description("Stale cached responses confirmed by upstream with 304 Not Modified")
+                .register(meterRegistry);
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * Returns the stored response for this request, or null when nothing matching is cached.
+     * A stored response only matches when the request agrees on every header the response varied on
+     * and accepts the stored body's Content-Encoding.
+     */
+    public CachedResponse lookup(String key, HttpServletRequest request) {
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached == null || !cached.matchesVary(request)
+                || !ContentEncodings.isAcceptable(cached.header("Content-Encoding"), request.getHeader("Accept-Encoding"))) {
+            return null;
+        }
+        return cached;
+    }
+
+    public void store(String key, CachedResponse response) {
+        cache.put(key, response);
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Builds a cache entry from an upstream response, or returns null when the response must not be
+     * shared (wrong status, no-store/private, cookies, Vary: *, or nothing to revalidate with).
+     */
+    public CachedResponse toCacheEntry(ClassicHttpResponse upstreamResponse, HttpServletRequest request, byte[] body) {
+        if (upstreamResponse.getCode() != 200 || upstreamResponse.containsHeader("Set-Cookie")) {
+            return null;
+        }
+
+        Map<String, String> directives = cacheControl(upstreamResponse);
+        if (directives.containsKey("no-store") || directives.containsKey("private")) {
+            return null;
+        }
+
+        List<String> varyNames = new ArrayList<>();
+        for (Header vary : upstreamResponse.getHeaders("Vary")) {
+            for (String name : vary.getValue().split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.equals("*")) {
+                    return null;
+                }
+                if (!trimmed.isEmpty()) {
+                    varyNames.add(trimmed);
+                }
+            }
+        }
+        List<String> varyValues = varyNames.stream().map(request::getHeader).toList();
+
+        List<String[]> headers = new ArrayList<>();
+        for (Header header : upstreamResponse.getHeaders()) {
+            if (!UNCACHED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                headers.add(new String[] {header.getName(), header.getValue()});
+            }
+        }
+
+        String etag = headerValue(upstreamResponse, "ETag");
+        String lastModified = headerValue(upstreamResponse, "Last-Modified");
+        long now = System.currentTimeMillis();
+        long freshUntil = now + freshnessMillis(upstreamResponse, directives, now);
+
+        if (freshUntil <= now && etag == null && lastModified == null) {
+            return null;
+        }
+
+        return new CachedResponse(upstreamResponse.getCode(), headers, body, etag, lastModified,
+                varyNames, varyValues, now, freshUntil);
+    }
+
+    /**
+     * Applies the headers of a 304 Not Modified to a stored entry, giving it a new freshness lifetime.
+     */
+    public CachedResponse revalidated(CachedResponse cached, ClassicHttpResponse notModified) {
+        revalidatedCounter.increment();
+        List<String[]> headers = new ArrayList<>(cached.headers());
+        for (Header header : notModified.getHeaders()) {
+            String name = header.getName();
+            if (UNCACHED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            headers.removeIf(h -> h[0].equalsIgnoreCase(name));
+        }
+        for (Header header : notModified.getHeaders()) {
+            if (!UNCACHED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                headers.add(new String[] {header.getName(), header.getValue()});
+            }
+        }
+
+        String etag = Objects.requireNonNullElse(headerValue(notModified, "ETag"), cached.etag());
+        String lastModified = Objects.requireNonNullElse(headerValue(notModified, "Last-Modified"), cached.lastModified());
+        long now = System.currentTimeMillis();
+        long freshUntil = now + freshnessMillis(notModified, cacheControl(notModified), now);
+
+        return new CachedResponse(cached.status(), headers, cached.body(), etag, lastModified,
+                cached.varyNames(), cached.varyValues(), now, freshUntil);
+    }
+
+    private long freshnessMillis(ClassicHttpResponse response, Map<String, String> directives, long now) {
+        if (directives.containsKey("no-cache")) {
+            return 0;
+        }
+        String maxAge = directives.containsKey("s-maxage") ? directives.get("s-maxage") : directives.get("max-age");
+        if (maxAge != null) {
+            try {
+                return Math.max(0, Long.parseLong(maxAge)) * 1000;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        String expires = headerValue(response, "Expires");
+        if (expires != null) {
+            try {
+                long expiresAt = ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.max(0, expiresAt - now);
+            } catch (DateTimeParseException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private Map<String, String> cacheControl(ClassicHttpResponse response) {
+        Map<String, String> directives = new HashMap<>();
+        for (Header header : response.getHeaders("Cache-Control")) {
+            for (String directive : header.getValue().split(",")) {
+                String[] parts = directive.trim().split("=", 2);
+                String name = parts[0].trim().toLowerCase(Locale.ROOT);
+                if (!name.isEmpty()) {
+                    directives.put(name, parts.length > 1 ? parts[1].trim().replace("\"", "") : "");
+                }
+            }
+        }
+        return directives;
+    }
+
+    private String headerValue(ClassicHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    public record CachedResponse(int status, List<String[]> headers, byte[] body, String etag, String lastModified,
+                                 List<String> varyNames, List<String> varyValues, long storedAt, long freshUntil) {
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() < freshUntil;
+        }
+
+        public long ageSeconds() {
+            return Math.max(0, (System.currentTimeMillis() - storedAt) / 1000);
+        }
+
+        /**
+         * True when the client's validators show it already holds this representation.
+         */
+        public boolean notModifiedFor(HttpServletRequest request) {
+            String ifNoneMatch = request.getHeader("If-None-Match");
+            if (ifNoneMatch != null) {
+                return etag != null && (ifNoneMatch.trim().equals("*")
+                        || Arrays.stream(ifNoneMatch.split(",")).map(String::trim).anyMatch(etag::equals));
+            }
+            String ifModifiedSince = request.getHeader("If-Modified-Since");
+            return ifModifiedSince != null && ifModifiedSince.equals(lastModified);
+        }
+
+        String header(String name) {
+            for (String[] header : headers) {
+                if (header[0].equalsIgnoreCase(name)) {
+                    return header[1];
+                }
+            }
+            return null;
+        }
+
+        boolean matchesVary(HttpServletRequest request) {
+            for (int i = 0; i < varyNames.size(); i++) {
+                if (!Objects.equals(varyValues.get(i), request.getHeader(varyNames.get(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int weight() {
+            // Body plus a rough allowance for headers and bookkeeping
+            return body.length + 64 * (headers.size() + 4);
+        }
+    }
+}
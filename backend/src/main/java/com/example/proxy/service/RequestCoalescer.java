@@ -0,0 +1,107 @@
+package com.example.proxy.service;
+
+import com.example.proxy.config.ProxyConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single-flight coalescing for identical proxied GETs.
+ *
+ * The first request for a key becomes the leader and goes upstream; requests for the same key that
+ * arrive while it is in flight wait for the leader's buffered response instead of sending their own.
+ * If the leader's response can't be shared (too large, sets cookies, or the call failed) the
+ * followers fall back to calling upstream themselves.
+ */
+@Service
+public class RequestCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    // Request headers that change what upstream sends back, beyond the configured vary headers
+    private static final List<String> CONDITIONAL_HEADERS = List.of("If-None-Match", "If-Modified-Since", "Range");
+
+    private final Map<String, CompletableFuture<SharedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final List<String> keyHeaders;
+    private final Duration maxWait;
+    private final Counter coalescedCounter;
+    private final Counter fallbackCounter;
+
+    public RequestCoalescer(ProxyConfig proxyConfig, MeterRegistry meterRegistry) {
+        this.keyHeaders = new ArrayList<>(proxyConfig.getCoalesceVaryHeaders());
+        this.keyHeaders.addAll(CONDITIONAL_HEADERS);
+        this.maxWait = proxyConfig.getCoalesceMaxWait();
+        this.coalescedCounter = Counter.builder("proxy.requests.coalesced")
+                .description("Proxied GETs answered with another in-flight request's upstream response")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("proxy.requests.coalesce.fallbacks")
+                .description("Coalesced GETs that had to call upstream themselves")
+                .register(meterRegistry);
+        Gauge.builder("proxy.requests.coalesce.inflight", inFlight, Map::size)
+                .description("Distinct upstream GETs currently being shared")
+                .register(meterRegistry);
+    }
+
+    public String key(String target, HttpServletRequest request) {
+        StringBuilder key = new StringBuilder("GET ").append(target);
+        for (String name : keyHeaders) {
+            key.append('\n').append(name).append(": ").append(Objects.toString(request.getHeader(name), ""));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Registers {@code leader} for the key. Returns null when the caller is now the leader, or the
+     * in-flight leader's future when another request got there first.
+     */
+    public CompletableFuture<SharedResponse> join(String key, CompletableFuture<SharedResponse> leader) {
+        return inFlight.putIfAbsent(key, leader);
+    }
+
+    /**
+     * Waits for the leader's response. Returns null if it can't be shared, so the caller should go
+     * upstream itself.
+     */
+    public SharedResponse await(String key, CompletableFuture<SharedResponse> leader) {
+        try {
+            SharedResponse shared = leader.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            if (shared != null) {
+                coalescedCounter.increment();
+                return shared;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Coalesced request for {} could not use the leader's response: {}", key, e.toString());
+        }
+        fallbackCounter.increment();
+        return null;
+    }
+
+    /**
+     * Publishes the leader's result (null when it can't be shared) and lets the next request for
+     * this key start a new upstream call.
+     */
+    public void complete(String key, CompletableFuture<SharedResponse> leader, SharedResponse response) {
+        inFlight.remove(key, leader);
+        leader.complete(response);
+    }
+
+    public record SharedResponse(int status, List<String[]> headers, byte[] body) {
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.proxy.service;
+
+import com.example.proxy.util.CsvReader;
+import com.example.proxy.util.TextNormalizer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bulk import of resources from streamed NDJSON or CSV.
+ *
+ * The input is parsed one row at a time and written with JDBC batch inserts, one transaction per
+ * chunk of resources.import.chunk-size rows, so only one chunk is ever in memory and no entity is
+ * created. A chunk the database rejects is retried row by row to find the rows at fault; the rest
+ * of it is still written. Rows that fail to parse or validate are reported with their line and
+ * skipped. Since the inserts bypass ResourceService, the in-memory search structures, counts and
+ * caches are rebuilt once the import is done.
+ *
+ * The import in progress can be watched through {@link #status()}, which reports its running totals
+ * after every chunk, and keeps the result of the last import once it is done.
+ *
+ * CSV input needs a header row naming the columns; NDJSON rows are objects with the same names.
+ * Recognized columns are title, description, type, fileUrl, thumbnailUrl, pages, publishDate,
+ * clicks and featured; others are ignored.
+ */
+@Service
+public class ResourceImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceImportService.class);
+
+    private static final String INSERT = "INSERT INTO resources (title, description, type, file_url, thumbnail_url, " +
+            "pages, publish_date, clicks, favorite_count, featured, search_title, search_description, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ?, ?, ?, ?)";
+
+    public enum Format { NDJSON, CSV }
+
+    public record RowError(long line, String message) {}
+
+    /**
+     * @param errorsTruncated whether more rows failed than are listed in errors
+     */
+    public record ImportResult(long imported, long failed, List<RowError> errors, boolean errorsTruncated,
+                               long durationMs) {}
+
+    /**
+     * @param running whether an import is in progress; the counts and phase are then its own so far
+     * @param phase "importing" while rows are written, "refreshing" while search structures are rebuilt
+     * @param lastResult the outcome of the last finished import, null if none has run
+     */
+    public record ImportStatus(boolean running, String phase, long imported, long failed, long elapsedMs,
+                               ImportResult lastResult) {}
+
+    private record Row(long line, String title, String description, String type, String fileUrl,
+                       String thumbnailUrl, Integer pages, LocalDateTime publishDate, Integer clicks,
+                       Boolean featured) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final SearchIndexService searchIndexService;
+    private final SuggestionService suggestionService;
+    private final DocumentSearchService documentSearchService;
+    private final ResourceTypeCounts resourceTypeCounts;
+    private final SearchResultCache searchResultCache;
+    private final CatalogueSnapshots catalogueSnapshots;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final Counter importedRows;
+    private final Counter failedRows;
+
+    // One import at a time; concurrent ones would only fight over the same rebuilds
+    private final ReentrantLock importLock = new ReentrantLock();
+    private volatile Progress current;
+    private volatile ImportResult lastResult;
+
+    public ResourceImportService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 ObjectMapper objectMapper, SearchIndexService searchIndexService,
+                                 SuggestionService suggestionService, DocumentSearchService documentSearchService,
+                                 ResourceTypeCounts resourceTypeCounts, SearchResultCache searchResultCache,
+                                 CatalogueSnapshots catalogueSnapshots, MeterRegistry meterRegistry,
+                                 @Value("${resources.import.chunk-size:1000}") int chunkSize,
+                                 @Value("${resources.import.max-errors:100}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.searchIndexService = searchIndexService;
+        this.suggestionService = suggestionService;
+        this.documentSearchService = documentSearchService;
+        this.resourceTypeCounts = resourceTypeCounts;
+        this.searchResultCache = searchResultCache;
+        this.catalogueSnapshots = catalogueSnapshots;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+
+        this.importedRows = Counter.builder("resources.import.rows")
+                .description("Rows handled by bulk resource imports")
+                .tag("outcome", "imported")
+                .register(meterRegistry);
+        this.failedRows = Counter.builder("resources.import.rows")
+                .description("Rows handled by bulk resource imports")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Imports every row of the input, returning null without reading it if another import is running.
+     *
+     * @throws IOException if reading the input fails; chunks written before that stay imported
+     */
+    public ImportResult importResources(InputStream input, Format format) throws IOException {
+        if (!importLock.tryLock()) {
+            return null;
+        }
+        try {
+            Progress progress = new Progress();
+            current = progress;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            try {
+                if (format == Format.CSV) {
+                    readCsv(reader, progress);
+                } else {
+                    readNdjson(reader, progress);
+                }
+                progress.flush();
+            } finally {
+                if (progress.imported > 0) {
+                    progress.phase = "refreshing";
+                    refresh();
+                }
+            }
+            long durationMs = System.currentTimeMillis() - progress.start;
+            log.info("Imported {} resources in {}ms, {} rows failed", progress.imported, durationMs, progress.failed);
+            lastResult = new ImportResult(progress.imported, progress.failed, progress.errors,
+                    progress.failed > progress.errors.size(), durationMs);
+            return lastResult;
+        } finally {
+            current = null;
+            importLock.unlock();
+        }
+    }
+
+    public ImportStatus status() {
+        Progress progress = current;
+        if (progress == null) {
+            return new ImportStatus(false, null, 0, 0, 0, lastResult);
+        }
+        return new ImportStatus(true, progress.phase, progress.imported, progress.failed,
+                System.currentTimeMillis() - progress.start, lastResult);
+    }
+
+    private void readNdjson(BufferedReader reader, Progress progress) throws IOException {
+        long line = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            Map<String, Object> values;
+            try {
+                values = objectMapper.readValue(text, new TypeReference<>() {});
+            } catch (JsonProcessingException e) {
+                progress.reject(line, "Invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            progress.add(line, values);
+        }
+    }
+
+    private void readCsv(BufferedReader reader, Progress progress) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        // Spreadsheet exports often start with a byte order mark
+        header.set(0, header.get(0).replace("\uFEFF", ""));
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            if (fields.size() != header.size()) {
+                progress.reject(csv.line(), "Expected " + header.size() + " fields, found " + fields.size());
+                continue;
+            }
+            Map<String, Object> values = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                // An empty cell is a missing value
+                if (!fields.get(i).isEmpty()) {
+                    values.put(header.get(i).trim(), fields.get(i));
+                }
+            }
+            progress.add(csv.line(), values);
+        }
+    }
+
+    private Row toRow(long line, Map<String, Object> values) {
+        String publishDate = text(values.get("publishDate"));
+        // A bare date means the start of that day
+        if (publishDate != null && publishDate.length() == 10) {
+            publishDate += "T00:00:00";
+        }
+        Row row = new Row(line,
+                text(values.get("title")),
+                text(values.get("description")),
+                text(values.get("type")),
+                text(values.get("fileUrl")),
+                text(values.get("thumbnailUrl")),
+                objectMapper.convertValue(values.get("pages"), Integer.class),
+                objectMapper.convertValue(publishDate, LocalDateTime.class),
+                objectMapper.convertValue(values.get("clicks"), Integer.class),
+                objectMapper.convertValue(values.get("featured"), Boolean.class));
+
+        // Same constraints as the Resource entity's columns
+        require(row.title() != null, "title is required");
+        require(row.type() != null, "type is required");
+        require(row.fileUrl() != null, "fileUrl is required");
+        require(row.publishDate() != null, "publishDate is required");
+        require(row.title().length() <= 255, "title is longer than 255 characters");
+        require(row.description() == null || row.description().length() <= 1000,
+                "description is longer than 1000 characters");
+        return row;
+    }
+
+    private static String text(Object value) {
+        return value == null ? null : value.toString().trim();
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private void bind(PreparedStatement ps, Row row) throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        ps.setString(1, row.title());
+        ps.setString(2, row.description());
+        ps.setString(3, row.type());
+        ps.setString(4, row.fileUrl());
+        ps.setString(5, row.thumbnailUrl());
+        ps.setObject(6, row.pages(), Types.INTEGER);
+        ps.setObject(7, row.publishDate());
+        ps.setInt(8, row.clicks() != null ? row.clicks() : 0);
+        ps.setBoolean(9, row.featured() != null && row.featured());
+        ps.setString(10, TextNormalizer.normalize(row.title()));
+        ps.setString(11, TextNormalizer.normalize(row.description()));
+        ps.setObject(12, now);
+        ps.setObject(13, now);
+    }
+
+    /**
+     * Brings everything ResourceService keeps up to date on single writes in line with the imported rows.
+     */
+    private void refresh() {
+        long start = System.currentTimeMillis();
+        searchIndexService.rebuild();
+        suggestionService.rebuild();
+        resourceTypeCounts.reconcile();
+        searchResultCache.clear();
+        catalogueSnapshots.resourcesChanged();
+        // Queues text extraction in the background; already extracted PDFs come from its disk cache
+        documentSearchService.rebuild();
+        log.info("Refreshed search structures after import in {}ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Rows parsed so far but not yet written, and the running totals. Only the importing thread
+     * writes; the totals are volatile for {@link #status()}.
+     */
+    private final class Progress {
+        final long start = System.currentTimeMillis();
+        final List<Row> chunk = new ArrayList<>(chunkSize);
+        final List<RowError> errors = new ArrayList<>();
+        volatile String phase = "importing";
+        volatile long imported;
+        volatile long failed;
+
+        void add(long line, Map<String, Object> values) {
+            Row row;
+            try {
+                row = toRow(line, values);
+            } catch (IllegalArgumentException e) {
+                reject(line, e.getMessage());
+                return;
+            }
+            chunk.add(row);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(long line, String message) {
+            failed++;
+            failedRows.increment();
+            if (errors.size() < maxErrors) {
+                errors.add(new RowError(line, message));
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT, chunk, chunk.size(), ResourceImportService.this::bind));
+                imported += chunk.size();
+                importedRows.increment(chunk.size());
+            } catch (DataAccessException e) {
+                // The whole chunk rolled back; write its rows one by one to find the ones at fault
+                log.warn("Import chunk ending on line {} was rejected, retrying row by row: {}",
+                        chunk.get(chunk.size() - 1).line(), e.getMessage());
+                for (Row row : chunk) {
+                    try {
+                        jdbcTemplate.update(INSERT, ps -> bind(ps, row));
+                        imported++;
+                        importedRows.increment();
+                    } catch (DataAccessException rowError) {
+                        reject(row.line(), NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+                    }
+                }
+            }
+            chunk.clear();
+            log.info("Import progress: {} rows imported, {} failed", imported, failed);
+        }
+    }
+}
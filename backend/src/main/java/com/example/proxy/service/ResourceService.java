@@ -1,14 +1,24 @@
 package com.example.proxy.service;
 
+import com.example.proxy.dto.FavoriteSummary;
+import com.example.proxy.dto.ResourceSummary;
+import com.example.proxy.dto.TrendingResource;
 import com.example.proxy.entity.Resource;
 import com.example.proxy.entity.ResourceFavorite;
 import com.example.proxy.repository.ResourceFavoriteRepository;
 import com.example.proxy.repository.ResourceRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,40 +31,98 @@ public class ResourceService {
     
     private final ResourceRepository resourceRepository;
     private final ResourceFavoriteRepository favoriteRepository;
+    private final SearchIndexService searchIndexService;
+    private final SearchService searchService;
+    private final SuggestionService suggestionService;
+    private final SearchResultCache searchResultCache;
+    private final DocumentSearchService documentSearchService;
+    private final ClickCounter clickCounter;
+    private final UserFavoritesCache userFavoritesCache;
+    private final ResourceTypeCounts resourceTypeCounts;
+    private final CatalogueSnapshots catalogueSnapshots;
+    private final TrendingResources trendingResources;
+    private final TransactionTemplate transactionTemplate;
     
     public ResourceService(ResourceRepository resourceRepository, 
-                          ResourceFavoriteRepository favoriteRepository) {
+                          ResourceFavoriteRepository favoriteRepository,
+                          SearchIndexService searchIndexService,
+                          SearchService searchService,
+                          SuggestionService suggestionService,
+                          SearchResultCache searchResultCache,
+                          DocumentSearchService documentSearchService,
+                          ClickCounter clickCounter,
+                          UserFavoritesCache userFavoritesCache,
+                          ResourceTypeCounts resourceTypeCounts,
+                          CatalogueSnapshots catalogueSnapshots,
+                          TrendingResources trendingResources,
+                          TransactionTemplate transactionTemplate) {
         this.resourceRepository = resourceRepository;
         this.favoriteRepository = favoriteRepository;
+        this.searchIndexService = searchIndexService;
+        this.searchService = searchService;
+        this.suggestionService = suggestionService;
+        this.searchResultCache = searchResultCache;
+        this.documentSearchService = documentSearchService;
+        this.clickCounter = clickCounter;
+        this.userFavoritesCache = userFavoritesCache;
+        this.resourceTypeCounts = resourceTypeCounts;
+        this.catalogueSnapshots = catalogueSnapshots;
+        this.trendingResources = trendingResources;
+        this.transactionTemplate = transactionTemplate;
     }
     
-    public List<Resource> getAllResources() {
-        return resourceRepository.findAll();
+    public List<ResourceSummary> getAllResources() {
+        return resourceRepository.findAllSummaries();
     }
     
-    public List<Resource> getFeaturedResources() {
-        return resourceRepository.findByFeaturedTrue();
+    public List<ResourceSummary> getFeaturedResources() {
+        return resourceRepository.findFeaturedSummaries();
     }
     
-    public List<Resource> getResourcesByType(String type) {
-        return resourceRepository.findByType(type);
+    public List<ResourceSummary> getResourcesByType(String type) {
+        return resourceRepository.findSummariesByType(type);
     }
     
-    public List<Resource> searchResources(String query) {
-        return resourceRepository.searchByTitleOrDescription(query);
+    /**
+     * One page of resources, newest first, starting after the given publish date and id. Pass a
+     * null publishDate for the first page.
+     *
+     * @param type only return resources of this type, or null for all types
+     */
+    public List<ResourceSummary> getResourcesAfter(String type, LocalDateTime publishDate, Long id, int size) {
+        if (publishDate == null) {
+            return type == null
+                    ? resourceRepository.findFirstPage(Limit.of(size))
+                    : resourceRepository.findFirstPageOfType(type, Limit.of(size));
+        }
+        return type == null
+                ? resourceRepository.findPageAfter(publishDate, id, Limit.of(size))
+                : resourceRepository.findPageOfTypeAfter(type, publishDate, id, Limit.of(size));
+    }
+    
+    /**
+     * The resources with the highest time-decayed click and favorite scores, best first.
+     */
+    public List<TrendingResource> getTrendingResources(int limit) {
+        List<TrendingResources.Ranked> ranked = trendingResources.top(limit);
+        Map<Long, ResourceSummary> resources = new HashMap<>();
+        for (ResourceSummary resource : resourceRepository.findSummariesByIds(
+                ranked.stream().map(TrendingResources.Ranked::id).toList())) {
+            resources.put(resource.id(), resource);
+        }
+        // A resource deleted since it was ranked has no row left; it drops out of the ranking after commit
+        return ranked.stream()
+                .filter(entry -> resources.containsKey(entry.id()))
+                .map(entry -> new TrendingResource(resources.get(entry.id()), entry.score()))
+                .toList();
     }
     
-    public List<Resource> searchResourcesByTypeAndQuery(String type, String query) {
-        return resourceRepository.searchByTypeAndQuery(type, query);
+    public Page<Resource> searchResources(String query, String type, Pageable pageable) {
+        return searchService.searchResources(query, type, pageable);
     }
     
     public Map<String, Long> getTypeCounts() {
-        List<Object[]> results = resourceRepository.countByType();
-        Map<String, Long> counts = new HashMap<>();
-        for (Object[] result : results) {
-            counts.put((String) result[0], (Long) result[1]);
-        }
-        return counts;
+        return resourceTypeCounts.snapshot();
     }
     
     public Optional<Resource> getResourceById(Long id) {
@@ -63,71 +131,120 @@ public class ResourceService {
     
     @Transactional
     public Resource saveResource(Resource resource) {
-        return resourceRepository.save(resource);
+        StoredVersion before = resource.getId() != null ? storedVersion(resource.getId()) : StoredVersion.NONE;
+        Resource saved = resourceRepository.save(resource);
+        searchIndexService.indexResource(saved);
+        suggestionService.indexResource(saved);
+        documentSearchService.indexResource(saved);
+        resourceTypeCounts.resourceChanged(before.type(), saved.getType());
+        catalogueSnapshots.resourcesChanged();
+        searchResultCache.resourceChanged(saved.getId(), before.text(),
+                SearchResultCache.searchableText(saved.getTitle(), saved.getDescription()));
+        return saved;
     }
     
     @Transactional
     public void deleteResource(Long id) {
+        StoredVersion before = storedVersion(id);
         resourceRepository.deleteById(id);
+        searchIndexService.removeResource(id);
+        suggestionService.removeResource(id);
+        documentSearchService.removeResource(id);
+        userFavoritesCache.resourceRemoved(id);
+        trendingResources.resourceRemoved(id);
+        if (before != StoredVersion.NONE) {
+            resourceTypeCounts.resourceChanged(before.type(), null);
+        }
+        catalogueSnapshots.resourcesChanged();
+        searchResultCache.resourceChanged(id, before.text(), null);
     }
     
-    @Transactional
-    public void incrementClicks(Long resourceId) {
-        resourceRepository.findById(resourceId).ifPresent(resource -> {
-            resource.setClicks(resource.getClicks() + 1);
-            resourceRepository.save(resource);
-            log.info("Incremented clicks for resource {}: {}", resourceId, resource.getClicks());
-        });
+    // What the caches need from the stored version, read before a write replaces it
+    private record StoredVersion(String text, String type) {
+        static final StoredVersion NONE = new StoredVersion(null, null);
     }
     
-    @Transactional
+    private StoredVersion storedVersion(Long id) {
+        return resourceRepository.findById(id)
+                .map(resource -> new StoredVersion(
+                        SearchResultCache.searchableText(resource.getTitle(), resource.getDescription()),
+                        resource.getType()))
+                .orElse(StoredVersion.NONE);
+    }
+    
+    /**
+     * Counts a click; it reaches the database with the next ClickCounter flush. Only the stored
+     * click count is read, by primary key, to check the resource exists. Returns the resource's
+     * clicks including those not yet written, or empty if there is no such resource.
+     */
+    public Optional<Long> incrementClicks(Long resourceId) {
+        return resourceRepository.findClicks(resourceId)
+                .map(written -> written + clickCounter.record(resourceId));
+    }
+    
+    /**
+     * Adds or removes a favorite. The row count of the delete decides which, and the resource's
+     * favoriteCount moves by a relative update in the same transaction, so concurrent toggles can
+     * neither double-count nor lose one.
+     */
     public Map<String, Object> toggleFavorite(Long resourceId, String username) {
-        Map<String, Object> response = new HashMap<>();
-        
-        Optional<Resource> resourceOpt = resourceRepository.findById(resourceId);
-        if (resourceOpt.isEmpty()) {
-            response.put("success", false);
-            response.put("message", "Resource not found");
-            return response;
+        Map<String, Object> response;
+        try {
+            response = transactionTemplate.execute(status -> applyFavoriteToggle(resourceId, username, status));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent toggle by the same user added this favorite first and this one rolled back
+            log.info("Concurrent favorite of resource {} by user {}", resourceId, username);
+            response = new HashMap<>();
+            response.put("success", true);
+            response.put("isFavorited", true);
+            response.put("favoriteCount", resourceRepository.findFavoriteCount(resourceId).orElse(0));
+            response.put("message", "Added to favorites");
         }
-        
-        Resource resource = resourceOpt.get();
-        Optional<ResourceFavorite> existingFavorite = 
-            favoriteRepository.findByResourceIdAndUsername(resourceId, username);
+        return response;
+    }
+    
+    private Map<String, Object> applyFavoriteToggle(Long resourceId, String username, TransactionStatus status) {
+        Map<String, Object> response = new HashMap<>();
         
         boolean isFavorited;
-        if (existingFavorite.isPresent()) {
-            // Remove favorite
-            favoriteRepository.delete(existingFavorite.get());
-            resource.setFavoriteCount(Math.max(0, resource.getFavoriteCount() - 1));
+        if (favoriteRepository.removeFavorite(resourceId, username) > 0) {
+            resourceRepository.adjustFavoriteCount(resourceId, -1);
             isFavorited = false;
             log.info("Removed favorite for resource {} by user {}", resourceId, username);
         } else {
-            // Add favorite
+            if (resourceRepository.adjustFavoriteCount(resourceId, 1) == 0) {
+                status.setRollbackOnly();
+                response.put("success", false);
+                response.put("message", "Resource not found");
+                return response;
+            }
             ResourceFavorite favorite = new ResourceFavorite();
-            favorite.setResource(resource);
+            favorite.setResource(resourceRepository.getReferenceById(resourceId));
             favorite.setUsername(username);
-            favoriteRepository.save(favorite);
-            resource.setFavoriteCount(resource.getFavoriteCount() + 1);
+            favoriteRepository.saveAndFlush(favorite);
             isFavorited = true;
+            trendingResources.favorited(resourceId);
             log.info("Added favorite for resource {} by user {}", resourceId, username);
         }
-        
-        resourceRepository.save(resource);
+        userFavoritesCache.favoriteChanged(username, resourceId, isFavorited);
         
         response.put("success", true);
         response.put("isFavorited", isFavorited);
-        response.put("favoriteCount", resource.getFavoriteCount());
+        response.put("favoriteCount", resourceRepository.findFavoriteCount(resourceId).orElse(0));
         response.put("message", isFavorited ? "Added to favorites" : "Removed from favorites");
         
         return response;
     }
     
-    public List<ResourceFavorite> getUserFavorites(String username) {
-        return favoriteRepository.findByUsername(username);
+    public List<FavoriteSummary> getUserFavorites(String username) {
+        return favoriteRepository.findSummariesByUsername(username);
     }
     
     public boolean isFavorited(Long resourceId, String username) {
-        return favoriteRepository.findByResourceIdAndUsername(resourceId, username).isPresent();
+        return userFavoritesCache.isFavorited(username, resourceId);
+    }
+    
+    public Map<Long, Boolean> getFavoriteStatuses(List<Long> resourceIds, String username) {
+        return userFavoritesCache.statuses(username, resourceIds);
     }
 }
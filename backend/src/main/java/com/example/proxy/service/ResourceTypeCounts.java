@@ -0,0 +1,100 @@
+package com.example.proxy.service;
+
+import com.example.proxy.repository.ResourceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of resources per type, kept in memory so listings never run a GROUP BY.
+ *
+ * ResourceService reports every create, retype and delete after it commits. A periodic
+ * reconciliation recounts in the database to repair drift from writes that bypass the service;
+ * its result is only applied if no change was reported while it ran, since it couldn't tell
+ * whether its query saw that change.
+ */
+@Service
+public class ResourceTypeCounts {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceTypeCounts.class);
+
+    private final ResourceRepository resourceRepository;
+
+    private volatile Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+    private final AtomicLong changes = new AtomicLong();
+
+    public ResourceTypeCounts(ResourceRepository resourceRepository) {
+        this.resourceRepository = resourceRepository;
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new HashMap<>();
+        counts.forEach((type, count) -> {
+            long value = count.get();
+            if (value > 0) {
+                snapshot.put(type, value);
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * Moves one resource between types once the surrounding transaction commits.
+     *
+     * @param previousType its type before the write, null when it was created
+     * @param type its type after the write, null when it was deleted
+     */
+    public void resourceChanged(String previousType, String type) {
+        if (Objects.equals(previousType, type)) {
+            return;
+        }
+        SearchIndexService.afterCommit(() -> {
+            synchronized (this) {
+                changes.incrementAndGet();
+                if (previousType != null) {
+                    counts.computeIfAbsent(previousType, t -> new AtomicLong()).decrementAndGet();
+                }
+                if (type != null) {
+                    counts.computeIfAbsent(type, t -> new AtomicLong()).incrementAndGet();
+                }
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${resources.type-counts.reconcile-interval:10m}",
+            fixedDelayString = "${resources.type-counts.reconcile-interval:10m}")
+    public void reconcile() {
+        long changesBefore = changes.get();
+        List<Object[]> rows = resourceRepository.countByType();
+
+        Map<String, AtomicLong> fresh = new ConcurrentHashMap<>();
+        for (Object[] row : rows) {
+            fresh.put((String) row[0], new AtomicLong((Long) row[1]));
+        }
+        Map<String, Long> recounted = new HashMap<>();
+        fresh.forEach((type, count) -> recounted.put(type, count.get()));
+
+        synchronized (this) {
+            if (changes.get() != changesBefore) {
+                log.debug("Resources changed during type count reconciliation, retrying next time");
+                return;
+            }
+            Map<String, Long> current = snapshot();
+            if (!current.isEmpty() && !current.equals(recounted)) {
+                log.warn("Resource type counts drifted, corrected from {} to {}", current, recounted);
+            }
+            counts = fresh;
+        }
+    }
+}
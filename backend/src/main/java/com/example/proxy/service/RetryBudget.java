@@ -0,0 +1,55 @@
+package com.example.proxy.service;
+
+/**
+ * Caps retries and hedged requests for one route at a fraction of its regular traffic, after
+ * Finagle's RetryBudget.
+ *
+ * Every first attempt deposits {@code ratio} tokens and every extra attempt withdraws one. A small
+ * per-second allowance lets quiet routes retry at all. When upstream is failing across the board
+ * the balance drains and extra attempts stop, instead of multiplying the load on it.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double minPerSecond;
+    private final double maxBalance;
+
+    private double balance;
+    private long refilledAt = System.nanoTime();
+
+    public RetryBudget(double ratio, int minPerSecond) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        // Roughly ten seconds' worth of the allowance can be banked for a burst
+        this.maxBalance = Math.max(10, minPerSecond * 10);
+        this.balance = maxBalance;
+    }
+
+    public synchronized void deposit() {
+        refill();
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    /**
+     * Takes one token for an extra attempt, returning false when the budget is spent.
+     */
+    public synchronized boolean tryWithdraw() {
+        refill();
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+
+    public synchronized double getBalance() {
+        refill();
+        return balance;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        balance = Math.min(maxBalance, balance + minPerSecond * (now - refilledAt) / 1_000_000_000.0);
+        refilledAt = now;
+    }
+}
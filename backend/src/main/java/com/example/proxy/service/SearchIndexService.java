@@ -0,0 +1,261 @@
+package com.example.proxy.service;
+
+import com.example.proxy.dto.EventSummary;
+import com.example.proxy.dto.ResourceSummary;
+import com.example.proxy.entity.Event;
+import com.example.proxy.entity.Resource;
+import com.example.proxy.repository.EventRepository;
+import com.example.proxy.repository.ResourceRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over resource and event titles and descriptions, served from
+ * {@link InvertedIndex}es instead of LIKE scans.
+ *
+ * The indexes are built once the application is ready (after the data seeders) and kept current
+ * by ResourceService and EventService. Only the matching rows are loaded, by primary key. When
+ * app.search.mode selects another backend the indexes stay empty.
+ *
+ * A rebuild (also run after bulk imports) reads the tables in keyset pages of projected rows and
+ * builds new indexes without holding the lock that incremental updates take. Updates committed
+ * meanwhile go to the live indexes and are also recorded, then replayed onto the new indexes just
+ * before they are swapped in, so none is lost.
+ */
+@Service
+public class SearchIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    // Rows per keyset page read by a rebuild
+    static final int REBUILD_PAGE_SIZE = 500;
+
+    private final ResourceRepository resourceRepository;
+    private final EventRepository eventRepository;
+    private final boolean enabled;
+
+    private volatile Indexes indexes = new Indexes();
+    // Updates made while a rebuild runs, replayed onto its indexes; null otherwise. Guarded by this
+    private List<Consumer<Indexes>> replay;
+    // One rebuild at a time
+    private final Object rebuildLock = new Object();
+
+    /**
+     * The indexes a rebuild replaces together.
+     *
+     * @param resourceTypes type of each indexed resource, so type-filtered searches only load the
+     *                      page they return
+     */
+    private record Indexes(InvertedIndex resources, Map<Long, String> resourceTypes, InvertedIndex events) {
+        Indexes() {
+            this(new InvertedIndex(), new ConcurrentHashMap<>(), new InvertedIndex());
+        }
+    }
+
+    public SearchIndexService(ResourceRepository resourceRepository, EventRepository eventRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.search.mode:index}") String searchMode) {
+        this.resourceRepository = resourceRepository;
+        this.eventRepository = eventRepository;
+        this.enabled = "index".equalsIgnoreCase(searchMode);
+
+        Gauge.builder("search.index.documents", this, s -> s.indexes.resources().size())
+                .description("Documents in the in-memory search index")
+                .tag("type", "resource")
+                .register(meterRegistry);
+        Gauge.builder("search.index.documents", this, s -> s.indexes.events().size())
+                .description("Documents in the in-memory search index")
+                .tag("type", "event")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                replay = new ArrayList<>();
+            }
+            try {
+                Indexes built = new Indexes();
+                forEachRow(resourceRepository::findSummariesAfterId, ResourceSummary::id, resource -> {
+                    built.resources().put(resource.id(), resource.title(), resource.description());
+                    if (resource.type() != null) {
+                        built.resourceTypes().put(resource.id(), resource.type());
+                    }
+                });
+                forEachRow(eventRepository::findSummariesAfterId, EventSummary::id,
+                        event -> built.events().put(event.id(), event.title(), event.description()));
+                synchronized (this) {
+                    replay.forEach(change -> change.accept(built));
+                    indexes = built;
+                }
+                log.info("Search index built: {} resources, {} events in {}ms",
+                        built.resources().size(), built.events().size(), System.currentTimeMillis() - start);
+            } finally {
+                synchronized (this) {
+                    replay = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resources matching every word of the query, most relevant first.
+     *
+     * @param limit maximum number of results, or 0 for all matches
+     */
+    public List<Resource> searchResources(String query, int limit) {
+        return load(indexes.resources().search(query, limit), resourceRepository::findAllById, Resource::getId);
+    }
+
+    public List<Event> searchEvents(String query, int limit) {
+        return load(indexes.events().search(query, limit), eventRepository::findAllById, Event::getId);
+    }
+
+    /**
+     * One page of the resources matching the query, most relevant first.
+     *
+     * @param type only return resources of this type, or null for all types
+     */
+    public Page<Resource> searchResources(String query, String type, Pageable pageable) {
+        Indexes current = indexes;
+        List<Long> ids = current.resources().search(query, 0);
+        if (type != null) {
+            ids = ids.stream().filter(id -> type.equals(current.resourceTypes().get(id))).toList();
+        }
+        return page(ids, pageable, resourceRepository::findAllById, Resource::getId);
+    }
+
+    public Page<Event> searchEvents(String query, Pageable pageable) {
+        return page(indexes.events().search(query, 0), pageable, eventRepository::findAllById, Event::getId);
+    }
+
+    public void indexResource(Resource resource) {
+        Long id = resource.getId();
+        String title = resource.getTitle();
+        String description = resource.getDescription();
+        String type = resource.getType();
+        update(target -> {
+            target.resources().put(id, title, description);
+            if (type != null) {
+                target.resourceTypes().put(id, type);
+            } else {
+                target.resourceTypes().remove(id);
+            }
+        });
+    }
+
+    public void removeResource(Long id) {
+        update(target -> {
+            target.resources().remove(id);
+            target.resourceTypes().remove(id);
+        });
+    }
+
+    public void indexEvent(Event event) {
+        Long id = event.getId();
+        String title = event.getTitle();
+        String description = event.getDescription();
+        update(target -> target.events().put(id, title, description));
+    }
+
+    public void removeEvent(Long id) {
+        update(target -> target.events().remove(id));
+    }
+
+    /**
+     * Applies a change to the live indexes after commit, and records it for a rebuild in progress.
+     */
+    private void update(Consumer<Indexes> change) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (this) {
+                change.accept(indexes);
+                if (replay != null) {
+                    replay.add(change);
+                }
+            }
+        });
+    }
+
+    /**
+     * Feeds every row to {@code action} in id order, one keyset page of projected rows at a time,
+     * so a rebuild never holds a whole table of managed entities.
+     */
+    static <T> void forEachRow(BiFunction<Long, Limit, List<T>> pageAfter, Function<T, Long> idOf, Consumer<T> action) {
+        long after = 0;
+        List<T> page;
+        do {
+            page = pageAfter.apply(after, Limit.of(REBUILD_PAGE_SIZE));
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                after = idOf.apply(page.get(page.size() - 1));
+            }
+        } while (page.size() == REBUILD_PAGE_SIZE);
+    }
+
+    /**
+     * Applies an index change once the surrounding transaction commits, so a rolled-back write
+     * never shows up in search. Outside a transaction the change is applied straight away.
+     */
+    static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private <T> Page<T> page(List<Long> ids, Pageable pageable,
+                             Function<List<Long>, List<T>> finder, Function<T, Long> idOf) {
+        return new PageImpl<>(load(slice(ids, pageable), finder, idOf), pageable, ids.size());
+    }
+
+    private static <T> List<T> slice(List<T> items, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), items.size());
+        int to = Math.min(from + pageable.getPageSize(), items.size());
+        return items.subList(from, to);
+    }
+
+    private <T> List<T> load(List<Long> ids, Function<List<Long>, List<T>> finder, Function<T, Long> idOf) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, T> byId = finder.apply(ids).stream().collect(Collectors.toMap(idOf, Function.identity()));
+        // Keep the index's ranking; rows deleted since they were indexed are skipped
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.proxy.service;
+
+import com.example.proxy.util.TextNormalizer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded cache of search result pages, keyed by normalized query, type filter and page.
+ *
+ * A write only drops the entries it can affect: those whose page holds the written document, and
+ * those with a query word occurring in the document's text before or after the change. Matching on
+ * substrings of any query word errs on the side of dropping too much, whatever app.search.mode
+ * does with the words. Entries also expire after app.search.cache.ttl.
+ *
+ * Searches run outside the cache, so a slow one never holds a cache lock. Each source has a write
+ * version that is bumped before its entries are dropped. A search whose source was written while
+ * it ran returns its page but doesn't keep it, since the page may predate the write.
+ */
+@Service
+public class SearchResultCache {
+
+    public static final String RESOURCES = "resources";
+    public static final String EVENTS = "events";
+
+    /**
+     * @param type resource type filter, null for none
+     */
+    public record Key(String source, String query, String type, int page, int size) {}
+
+    private record Entry(Page<?> page, Set<Long> ids, List<String> words) {}
+
+    private final Cache<Key, Entry> cache;
+    private final Map<String, AtomicLong> versions = Map.of(RESOURCES, new AtomicLong(), EVENTS, new AtomicLong());
+
+    public SearchResultCache(MeterRegistry meterRegistry,
+                             @Value("${app.search.cache.max-entries:10000}") long maxEntries,
+                             @Value("${app.search.cache.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "search.results");
+    }
+
+    /**
+     * The query as {@link TextNormalizer} spells it, so trivially different spellings of a query
+     * share one entry and match the normalized columns.
+     */
+    public static String normalize(String text) {
+        return text == null ? "" : TextNormalizer.normalize(text);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Page<T> get(Key key, Supplier<Page<T>> search, Function<T, Long> idOf) {
+        Entry cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (Page<T>) cached.page();
+        }
+
+        AtomicLong version = versions.get(key.source());
+        long before = version.get();
+        Page<T> page = search.get();
+        if (version.get() != before) {
+            return page;
+        }
+        Set<Long> ids = page.getContent().stream().map(idOf).collect(Collectors.toSet());
+        Entry entry = new Entry(page, ids, InvertedIndex.tokenize(key.query()));
+        cache.asMap().putIfAbsent(key, entry);
+        // A write that bumped the version after the check above may have run its invalidation
+        // before the entry was there to see
+        if (version.get() != before) {
+            cache.asMap().remove(key, entry);
+        }
+        return page;
+    }
+
+    /**
+     * Drops the resource searches a write could change, once the surrounding transaction commits.
+     *
+     * @param before the resource's title and description before the write, null when it is new
+     * @param after its title and description after the write, null when it was deleted
+     */
+    public void resourceChanged(Long id, String before, String after) {
+        SearchIndexService.afterCommit(() -> invalidate(RESOURCES, id, before, after));
+    }
+
+    public void eventChanged(Long id, String before, String after) {
+        SearchIndexService.afterCommit(() -> invalidate(EVENTS, id, before, after));
+    }
+
+    /**
+     * Drops every cached page, for writes that bypass ResourceService and EventService.
+     */
+    public void clear() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        cache.invalidateAll();
+    }
+
+    public static String searchableText(String title, String description) {
+        return title + " " + description;
+    }
+
+    private void invalidate(String source, Long id, String before, String after) {
+        String oldText = normalize(before);
+        String newText = normalize(after);
+        versions.get(source).incrementAndGet();
+        cache.asMap().entrySet().removeIf(e -> e.getKey().source().equals(source)
+                && (e.getValue().ids().contains(id) || e.getValue().words().stream()
+                        .anyMatch(word -> oldText.contains(word) || newText.contains(word))));
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.proxy.service;
+
+import com.example.proxy.entity.Event;
+import com.example.proxy.entity.Resource;
+import com.example.proxy.repository.EventRepository;
+import com.example.proxy.repository.ResourceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ranked, paginated search over resources and events. The backend is picked with app.search.mode:
+ *
+ * index    - in-memory inverted index with BM25 ranking (default)
+ * postgres - generated tsvector columns with GIN indexes, ts_rank and websearch_to_tsquery
+ * like     - substring LIKE scan, title matches first; works on any database, e.g. H2 in dev
+ */
+@Service
+public class SearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+
+    private final ResourceRepository resourceRepository;
+    private final EventRepository eventRepository;
+    private final SearchIndexService searchIndexService;
+    private final SearchResultCache resultCache;
+    private final MeterRegistry meterRegistry;
+    private final String searchMode;
+    private final Duration deadline;
+    private final TransactionTemplate queryTemplate;
+
+    private final ExecutorService searchExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("search-", 0).factory());
+
+    /**
+     * Resources and events for one query. A source that failed or missed the deadline comes back
+     * as an empty page and is listed in {@code incomplete}.
+     */
+    public record CombinedResults(Page<Resource> resources, Page<Event> events, List<String> incomplete) {}
+
+    public SearchService(ResourceRepository resourceRepository, EventRepository eventRepository,
+                         SearchIndexService searchIndexService, SearchResultCache resultCache,
+                         MeterRegistry meterRegistry, PlatformTransactionManager transactionManager,
+                         @Value("${app.search.mode:index}") String searchMode,
+                         @Value("${app.search.deadline:800ms}") Duration deadline) {
+        this.resourceRepository = resourceRepository;
+        this.eventRepository = eventRepository;
+        this.searchIndexService = searchIndexService;
+        this.resultCache = resultCache;
+        this.meterRegistry = meterRegistry;
+        this.searchMode = searchMode;
+        this.deadline = deadline;
+        // The transaction timeout becomes the JDBC query timeout of every query run inside it, so a
+        // query outliving the deadline is stopped by the database. JDBC counts whole seconds.
+        this.queryTemplate = new TransactionTemplate(transactionManager);
+        this.queryTemplate.setReadOnly(true);
+        this.queryTemplate.setTimeout((int) Math.max(1, (deadline.toMillis() + 999) / 1000));
+        log.info("Search mode: {}", searchMode);
+    }
+
+    /**
+     * Searches resources and events in parallel on virtual threads under one shared deadline, so
+     * the caller waits for the slower source rather than the sum of both.
+     */
+    public CombinedResults searchAll(String query, Pageable pageable) {
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        Future<Page<Resource>> resources = searchExecutor.submit(() -> searchResources(query, null, pageable));
+        Future<Page<Event>> events = searchExecutor.submit(() -> searchEvents(query, pageable));
+
+        List<String> incomplete = new ArrayList<>();
+        Page<Resource> resourcePage = await("resources", resources, deadlineNanos, pageable, incomplete);
+        Page<Event> eventPage = await("events", events, deadlineNanos, pageable, incomplete);
+        return new CombinedResults(resourcePage, eventPage, incomplete);
+    }
+
+    private <T> Page<T> await(String source, Future<Page<T>> future, long deadlineNanos, Pageable pageable,
+                              List<String> incomplete) {
+        try {
+            return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Not interrupted: interrupting a virtual thread blocked on a socket closes the socket,
+            // which would throw away a pooled connection. The late result is dropped and the query
+            // timeout ends the query.
+            future.cancel(false);
+            log.warn("Search of {} missed the {}ms deadline", source, deadline.toMillis());
+            meterRegistry.counter("search.source.incomplete", "source", source, "reason", "timeout").increment();
+        } catch (ExecutionException e) {
+            log.error("Search of {} failed", source, e.getCause());
+            meterRegistry.counter("search.source.incomplete", "source", source, "reason", "error").increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+        }
+        incomplete.add(source);
+        return Page.empty(pageable);
+    }
+
+    /**
+     * Resources matching the query, most relevant first. Pages are served from
+     * {@link SearchResultCache} when the same query was run recently.
+     *
+     * @param type only return resources of this type, or null for all types
+     */
+    public Page<Resource> searchResources(String query, String type, Pageable pageable) {
+        String normalized = SearchResultCache.normalize(query);
+        SearchResultCache.Key key = new SearchResultCache.Key(SearchResultCache.RESOURCES, normalized, type,
+                pageable.getPageNumber(), pageable.getPageSize());
+        return resultCache.get(key, () -> queryTemplate.execute(status -> findResources(normalized, type, pageable)),
+                Resource::getId);
+    }
+
+    public Page<Event> searchEvents(String query, Pageable pageable) {
+        String normalized = SearchResultCache.normalize(query);
+        SearchResultCache.Key key = new SearchResultCache.Key(SearchResultCache.EVENTS, normalized, null,
+                pageable.getPageNumber(), pageable.getPageSize());
+        return resultCache.get(key, () -> queryTemplate.execute(status -> findEvents(normalized, pageable)),
+                Event::getId);
+    }
+
+    private Page<Resource> findResources(String query, String type, Pageable pageable) {
+        if ("postgres".equalsIgnoreCase(searchMode)) {
+            return resourceRepository.fullTextSearch(query, type, pageable);
+        }
+        if ("like".equalsIgnoreCase(searchMode)) {
+            return resourceRepository.searchPaged(query, type, pageable);
+        }
+        return searchIndexService.searchResources(query, type, pageable);
+    }
+
+    private Page<Event> findEvents(String query, Pageable pageable) {
+        if ("postgres".equalsIgnoreCase(searchMode)) {
+            return eventRepository.fullTextSearch(query, pageable);
+        }
+        if ("like".equalsIgnoreCase(searchMode)) {
+            return eventRepository.searchPaged(query, pageable);
+        }
+        return searchIndexService.searchEvents(query, pageable);
+    }
+}
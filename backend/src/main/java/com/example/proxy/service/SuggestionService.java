@@ -0,0 +1,218 @@
+package com.example.proxy.service;
+
+import com.example.proxy.dto.EventSummary;
+import com.example.proxy.dto.ResourceSummary;
+import com.example.proxy.entity.Event;
+import com.example.proxy.entity.Resource;
+import com.example.proxy.repository.EventRepository;
+import com.example.proxy.repository.ResourceRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Typeahead suggestions over resource titles, event titles and resource types, answered from a
+ * {@link SuggestionTrie} without touching the database.
+ *
+ * Resources are weighted by clicks and types by how many resources they have. The trie is built
+ * once the application is ready and kept current by ResourceService and EventService, whatever
+ * app.search.mode is.
+ *
+ * A rebuild reads keyset pages of projected rows and builds the new trie without holding the lock
+ * that incremental updates take; updates committed meanwhile are recorded and replayed onto it
+ * before it is swapped in. Click flushes wait for a running rebuild (see {@link #writingClicks}), so
+ * clicks are never counted both in the rows it read and on top of them.
+ */
+@Service
+public class SuggestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SuggestionService.class);
+
+    private final ResourceRepository resourceRepository;
+    private final EventRepository eventRepository;
+
+    private volatile Suggestions suggestions = new Suggestions(new SuggestionTrie(), new HashMap<>(), new HashMap<>());
+    // Updates made while a rebuild runs, replayed onto its trie; null otherwise. Guarded by this
+    private List<Consumer<Suggestions>> replay;
+    // Held by a rebuild throughout and by a click flush from its write to its addClicks calls
+    private final ReentrantLock clickWrites = new ReentrantLock();
+
+    /**
+     * What a rebuild replaces together. The maps are guarded by the service's lock.
+     *
+     * @param resourceTypes type of every indexed resource, so type weights follow creates, retypes
+     *                      and deletes
+     */
+    private record Suggestions(SuggestionTrie trie, Map<Long, String> resourceTypes, Map<String, Integer> typeCounts) {
+    }
+
+    public SuggestionService(ResourceRepository resourceRepository, EventRepository eventRepository,
+                             MeterRegistry meterRegistry) {
+        this.resourceRepository = resourceRepository;
+        this.eventRepository = eventRepository;
+
+        Gauge.builder("search.suggest.entries", this, s -> s.suggestions.trie().size())
+                .description("Entries in the typeahead trie")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        clickWrites.lock();
+        try {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                replay = new ArrayList<>();
+            }
+            try {
+                Map<String, SuggestionTrie.Suggestion> entries = new HashMap<>();
+                Map<Long, String> resourceTypes = new HashMap<>();
+                Map<String, Integer> typeCounts = new HashMap<>();
+                SearchIndexService.forEachRow(resourceRepository::findSummariesAfterId, ResourceSummary::id, resource -> {
+                    entries.put(resourceKey(resource.id()), resourceSuggestion(resource.id(), resource.title(), resource.clicks()));
+                    if (resource.type() != null) {
+                        resourceTypes.put(resource.id(), resource.type());
+                        typeCounts.merge(resource.type(), 1, Integer::sum);
+                    }
+                });
+                typeCounts.forEach((type, count) -> entries.put(typeKey(type), typeSuggestion(type, count)));
+                SearchIndexService.forEachRow(eventRepository::findSummariesAfterId, EventSummary::id,
+                        event -> entries.put(eventKey(event.id()), eventSuggestion(event.id(), event.title())));
+                Suggestions built = new Suggestions(SuggestionTrie.of(entries), resourceTypes, typeCounts);
+
+                synchronized (this) {
+                    replay.forEach(change -> change.accept(built));
+                    suggestions = built;
+                }
+                log.info("Suggestion trie built: {} entries in {}ms", built.trie().size(), System.currentTimeMillis() - start);
+            } finally {
+                synchronized (this) {
+                    replay = null;
+                }
+            }
+        } finally {
+            clickWrites.unlock();
+        }
+    }
+
+    public List<SuggestionTrie.Suggestion> suggest(String prefix, int limit) {
+        return suggestions.trie().suggest(prefix, limit);
+    }
+
+    public void indexResource(Resource resource) {
+        Long id = resource.getId();
+        String type = resource.getType();
+        SuggestionTrie.Suggestion suggestion = resourceSuggestion(id, resource.getTitle(), resource.getClicks());
+        SearchIndexService.afterCommit(() -> update(target -> {
+            target.trie().put(resourceKey(id), suggestion);
+            String previous = type != null ? target.resourceTypes().put(id, type) : target.resourceTypes().remove(id);
+            if (previous == null || !previous.equals(type)) {
+                adjustType(target, previous, -1);
+                adjustType(target, type, 1);
+            }
+        }));
+    }
+
+    /**
+     * Runs a click flush's database write together with its {@link #addClicks} calls, after any
+     * rebuild in progress, so a rebuild reads each flush's clicks from the table or gets them from
+     * addClicks, never both.
+     */
+    public <T> T writingClicks(Supplier<T> write) {
+        clickWrites.lock();
+        try {
+            return write.get();
+        } finally {
+            clickWrites.unlock();
+        }
+    }
+
+    /**
+     * Raises a resource's weight by clicks that were just written out.
+     */
+    public void addClicks(Long id, long clicks) {
+        update(target -> {
+            SuggestionTrie.Suggestion current = target.trie().get(resourceKey(id));
+            if (current != null) {
+                target.trie().put(resourceKey(id), new SuggestionTrie.Suggestion(current.kind(), current.id(),
+                        current.text(), current.weight() + clicks));
+            }
+        });
+    }
+
+    public void removeResource(Long id) {
+        SearchIndexService.afterCommit(() -> update(target -> {
+            target.trie().remove(resourceKey(id));
+            adjustType(target, target.resourceTypes().remove(id), -1);
+        }));
+    }
+
+    public void indexEvent(Event event) {
+        Long id = event.getId();
+        SuggestionTrie.Suggestion suggestion = eventSuggestion(id, event.getTitle());
+        SearchIndexService.afterCommit(() -> update(target -> target.trie().put(eventKey(id), suggestion)));
+    }
+
+    public void removeEvent(Long id) {
+        SearchIndexService.afterCommit(() -> update(target -> target.trie().remove(eventKey(id))));
+    }
+
+    /**
+     * Applies a change to the live trie, and records it for a rebuild in progress.
+     */
+    private synchronized void update(Consumer<Suggestions> change) {
+        change.accept(suggestions);
+        if (replay != null) {
+            replay.add(change);
+        }
+    }
+
+    private static void adjustType(Suggestions target, String type, int delta) {
+        if (type == null) {
+            return;
+        }
+        Integer count = target.typeCounts().merge(type, delta, Integer::sum);
+        if (count == null || count <= 0) {
+            target.typeCounts().remove(type);
+            target.trie().remove(typeKey(type));
+        } else {
+            target.trie().put(typeKey(type), typeSuggestion(type, count));
+        }
+    }
+
+    private static SuggestionTrie.Suggestion resourceSuggestion(Long id, String title, Integer clicks) {
+        return new SuggestionTrie.Suggestion("resource", id, title, clicks != null ? clicks : 0);
+    }
+
+    private static SuggestionTrie.Suggestion eventSuggestion(Long id, String title) {
+        return new SuggestionTrie.Suggestion("event", id, title, 0);
+    }
+
+    private static SuggestionTrie.Suggestion typeSuggestion(String type, int count) {
+        return new SuggestionTrie.Suggestion("type", null, type, count);
+    }
+
+    private static String resourceKey(Long id) {
+        return "resource:" + id;
+    }
+
+    private static String eventKey(Long id) {
+        return "event:" + id;
+    }
+
+    private static String typeKey(String type) {
+        return "type:" + type;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.proxy.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix trie for typeahead suggestions, weighted by popularity.
+ *
+ * Each word of an entry's text is stored once, so "report" suggests "Annual Report 2023" and the
+ * trie has one node per distinct word prefix, shared by every entry using that word. Every node keeps
+ * the best few entries with a word starting with its prefix, so a one-word lookup only walks the
+ * typed prefix. A lookup of several words walks to the first one and goes through the entries holding
+ * it, best first, keeping those whose text has the typed words in a row. Updates recompute the best
+ * lists along the changed words only. Text is normalized like {@link InvertedIndex} does, so
+ * "Annual-Report" and "annual report" are the same key.
+ */
+public class SuggestionTrie {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final int MAX_KEY_LENGTH = 64;
+    // Words of an entry's text that are indexed, counted from its start
+    private static final int MAX_WORDS = 8;
+
+    private static final Comparator<Item> BEST_FIRST = Comparator
+            .comparingLong((Item item) -> item.suggestion().weight()).reversed()
+            .thenComparingInt(item -> item.suggestion().text().length())
+            .thenComparing(Item::key);
+
+    /**
+     * @param kind what the suggestion points at: resource, event or type
+     * @param id the resource or event id, null for types
+     */
+    public record Suggestion(String kind, Long id, String text, long weight) {}
+
+    /**
+     * @param text the suggestion's text normalized, for matching typed phrases
+     */
+    private record Item(String key, Suggestion suggestion, String text) {
+
+        static Item of(String key, Suggestion suggestion) {
+            return new Item(key, suggestion, String.join(" ", InvertedIndex.tokenize(suggestion.text())));
+        }
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        // Entries having this node's prefix as a whole word, best first; null when there are none
+        TreeSet<Item> entries;
+        List<Item> best = List.of();
+    }
+
+    private final Node root = new Node();
+    private final Map<String, Item> items = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Builds a trie in one pass, computing the per-node lists once at the end.
+     */
+    public static SuggestionTrie of(Map<String, Suggestion> suggestions) {
+        SuggestionTrie trie = new SuggestionTrie();
+        suggestions.forEach((key, suggestion) -> {
+            Item item = Item.of(key, suggestion);
+            trie.items.put(key, item);
+            for (String word : words(item)) {
+                trie.insert(word, item);
+            }
+        });
+        recomputeAll(trie.root);
+        return trie;
+    }
+
+    /**
+     * Adds a suggestion, replacing any earlier one stored under the same key.
+     */
+    public void put(String key, Suggestion suggestion) {
+        Item item = Item.of(key, suggestion);
+        lock.writeLock().lock();
+        try {
+            Item previous = items.put(key, item);
+            if (previous != null) {
+                for (String word : words(previous)) {
+                    detach(word, previous);
+                }
+            }
+            for (String word : words(item)) {
+                recompute(insert(word, item));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Item previous = items.remove(key);
+            if (previous != null) {
+                for (String word : words(previous)) {
+                    detach(word, previous);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Suggestion get(String key) {
+        lock.readLock().lock();
+        try {
+            Item item = items.get(key);
+            return item != null ? item.suggestion() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return items.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The most popular suggestions whose text has a word starting with the typed prefix, or, when
+     * several words are typed, has those words in a row with the last one as a prefix.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String path = normalize(prefix);
+        if (path.isEmpty()) {
+            return List.of();
+        }
+        int count = Math.min(Math.max(limit, 1), MAX_SUGGESTIONS);
+        int space = path.indexOf(' ');
+        lock.readLock().lock();
+        try {
+            if (space < 0) {
+                Node node = find(path);
+                return node == null ? List.of() : node.best.stream()
+                        .limit(count)
+                        .map(Item::suggestion)
+                        .toList();
+            }
+
+            Node node = find(path.substring(0, space));
+            if (node == null || node.entries == null) {
+                return List.of();
+            }
+            String phrase = " " + path;
+            List<Suggestion> matches = new ArrayList<>(count);
+            for (Item item : node.entries) {
+                if ((" " + item.text()).contains(phrase)) {
+                    matches.add(item.suggestion());
+                    if (matches.size() == count) {
+                        break;
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String normalize(String text) {
+        String normalized = String.join(" ", InvertedIndex.tokenize(text));
+        return normalized.length() > MAX_KEY_LENGTH ? normalized.substring(0, MAX_KEY_LENGTH) : normalized;
+    }
+
+    /**
+     * The distinct words an entry is found by: the first few words of its text.
+     */
+    private static Set<String> words(Item item) {
+        List<String> words = InvertedIndex.tokenize(item.text());
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String word : words.subList(0, Math.min(words.size(), MAX_WORDS))) {
+            distinct.add(word.length() > MAX_KEY_LENGTH ? word.substring(0, MAX_KEY_LENGTH) : word);
+        }
+        return distinct;
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Stores the item under the word, returning the nodes along it, root first.
+     */
+    private List<Node> insert(String word, Item item) {
+        List<Node> nodes = new ArrayList<>(word.length() + 1);
+        Node node = root;
+        nodes.add(node);
+        for (int i = 0; i < word.length(); i++) {
+            node = node.children.computeIfAbsent(word.charAt(i), c -> new Node());
+            nodes.add(node);
+        }
+        if (node.entries == null) {
+            node.entries = new TreeSet<>(BEST_FIRST);
+        }
+        node.entries.add(item);
+        return nodes;
+    }
+
+    private void detach(String word, Item item) {
+        List<Node> nodes = new ArrayList<>(word.length() + 1);
+        Node node = root;
+        nodes.add(node);
+        for (int i = 0; i < word.length() && node != null; i++) {
+            node = node.children.get(word.charAt(i));
+            nodes.add(node);
+        }
+        if (node == null || node.entries == null) {
+            return;
+        }
+        node.entries.remove(item);
+        if (node.entries.isEmpty()) {
+            node.entries = null;
+        }
+        // Prune the branch back to the last node that still holds something
+        for (int i = nodes.size() - 1; i > 0; i--) {
+            Node current = nodes.get(i);
+            if (current.entries != null || !current.children.isEmpty()) {
+                break;
+            }
+            nodes.get(i - 1).children.remove(word.charAt(i - 1));
+            nodes.remove(i);
+        }
+        recompute(nodes);
+    }
+
+    private static void recompute(List<Node> nodes) {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            recomputeNode(nodes.get(i));
+        }
+    }
+
+    private static void recomputeAll(Node node) {
+        for (Node child : node.children.values()) {
+            recomputeAll(child);
+        }
+        recomputeNode(node);
+    }
+
+    private static void recomputeNode(Node node) {
+        // An entry with several words under this prefix must only be listed once
+        Map<String, Item> candidates = new HashMap<>();
+        if (node.entries != null) {
+            for (Item item : node.entries) {
+                if (candidates.size() == MAX_SUGGESTIONS) {
+                    break;
+                }
+                candidates.put(item.key(), item);
+            }
+        }
+        for (Node child : node.children.values()) {
+            for (Item item : child.best) {
+                candidates.putIfAbsent(item.key(), item);
+            }
+        }
+        node.best = candidates.values().stream()
+                .sorted(BEST_FIRST)
+                .limit(MAX_SUGGESTIONS)
+                .toList();
+    }
+}
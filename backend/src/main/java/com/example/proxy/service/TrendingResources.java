@@ -0,0 +1,224 @@
+package com.example.proxy.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Time-decayed popularity of resources, for the trending listing.
+ *
+ * Each click and new favorite adds to an exponentially decayed score that halves every
+ * resources.trending.half-life. Scores are kept forward-decayed: an event at time t adds
+ * weight * 2^((t - landmark) / halfLife), and the current score is the stored one scaled by
+ * 2^(-(now - landmark) / halfLife). Every score shrinks by the same factor over time, so updating one
+ * is a single addition and never reorders the others. That lets the best resources.trending.size
+ * scores be kept in an ordered set that only changes when a score does; a score outside it can
+ * only get in when it grows, and that is when it gets compared. The landmark is moved forward at
+ * checkpoints, before the stored values could overflow.
+ *
+ * Removing a resource from the set leaves a gap that only a scan of every score can fill. The scan
+ * is put off until the set is next read, so a run of deletes costs one scan instead of one each.
+ *
+ * Scores are checkpointed to a file periodically and on shutdown, and reloaded on startup.
+ */
+@Service
+public class TrendingResources {
+
+    private static final Logger log = LoggerFactory.getLogger(TrendingResources.class);
+
+    private static final String CHECKPOINT_FILE = "trending.json";
+    // Move the landmark once it is this many half-lives behind; 2^64 is far from overflowing
+    private static final double MAX_LANDMARK_HALF_LIVES = 64;
+    // Scores that decayed below this are dropped at checkpoints
+    private static final double MIN_SCORE = 0.01;
+
+    /**
+     * @param score the decayed score at the time it was read
+     */
+    public record Ranked(long id, double score) {}
+
+    private record Checkpoint(long landmark, Map<Long, Double> scores) {}
+
+    private static final Comparator<Ranked> LOWEST_FIRST = Comparator
+            .comparingDouble(Ranked::score)
+            .thenComparingLong(Ranked::id);
+
+    private final ObjectMapper objectMapper;
+    private final Path checkpointDir;
+    private final double halfLifeMillis;
+    private final double favoriteWeight;
+    private final int size;
+
+    // Guarded by this
+    private long landmark = System.currentTimeMillis();
+    private final Map<Long, Double> scores = new HashMap<>();
+    private final TreeSet<Ranked> top = new TreeSet<>(LOWEST_FIRST);
+    private final Map<Long, Ranked> inTop = new HashMap<>();
+    // A removal took a resource out of a full set, so a score outside it may belong in it
+    private boolean incomplete;
+
+    public TrendingResources(ObjectMapper objectMapper,
+                             @Value("${resources.trending.checkpoint-dir:trending}") String checkpointDir,
+                             @Value("${resources.trending.half-life:3d}") Duration halfLife,
+                             @Value("${resources.trending.favorite-weight:5}") double favoriteWeight,
+                             @Value("${resources.trending.size:100}") int size) {
+        this.objectMapper = objectMapper;
+        this.checkpointDir = Path.of(checkpointDir);
+        this.halfLifeMillis = halfLife.toMillis();
+        this.favoriteWeight = favoriteWeight;
+        this.size = size;
+        restore();
+    }
+
+    public void clicked(Long resourceId, long clicks) {
+        add(resourceId, clicks);
+    }
+
+    /**
+     * Counts a new favorite once the surrounding transaction commits. Removed favorites aren't
+     * subtracted; they just stop adding, and decay does the rest.
+     */
+    public void favorited(Long resourceId) {
+        SearchIndexService.afterCommit(() -> add(resourceId, favoriteWeight));
+    }
+
+    public void resourceRemoved(Long resourceId) {
+        SearchIndexService.afterCommit(() -> {
+            synchronized (this) {
+                scores.remove(resourceId);
+                Ranked ranked = inTop.remove(resourceId);
+                if (ranked != null) {
+                    top.remove(ranked);
+                    incomplete = scores.size() > top.size();
+                }
+            }
+        });
+    }
+
+    /**
+     * The highest current scores, best first.
+     */
+    public synchronized List<Ranked> top(int limit) {
+        if (incomplete) {
+            refill();
+        }
+        double decay = Math.pow(2, -(System.currentTimeMillis() - landmark) / halfLifeMillis);
+        List<Ranked> ranked = new ArrayList<>(Math.min(limit, top.size()));
+        Iterator<Ranked> best = top.descendingIterator();
+        while (best.hasNext() && ranked.size() < limit) {
+            Ranked entry = best.next();
+            ranked.add(new Ranked(entry.id(), entry.score() * decay));
+        }
+        return ranked;
+    }
+
+    private synchronized void add(Long resourceId, double weight) {
+        double score = scores.merge(resourceId, weight * growth(System.currentTimeMillis()), Double::sum);
+        offer(resourceId, score);
+    }
+
+    private void offer(long id, double score) {
+        Ranked current = inTop.remove(id);
+        if (current != null) {
+            top.remove(current);
+        } else if (top.size() >= size) {
+            if (LOWEST_FIRST.compare(top.first(), new Ranked(id, score)) >= 0) {
+                return;
+            }
+            inTop.remove(top.pollFirst().id());
+        }
+        Ranked ranked = new Ranked(id, score);
+        top.add(ranked);
+        inTop.put(id, ranked);
+    }
+
+    // Puts the best scores outside the set back in after a removal left room; scans every score
+    private void refill() {
+        top.clear();
+        inTop.clear();
+        scores.forEach(this::offer);
+        incomplete = false;
+    }
+
+    private double growth(long time) {
+        return Math.pow(2, (time - landmark) / halfLifeMillis);
+    }
+
+    @Scheduled(fixedDelayString = "${resources.trending.checkpoint-interval:1m}")
+    public void checkpoint() {
+        Checkpoint checkpoint;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if ((now - landmark) / halfLifeMillis > MAX_LANDMARK_HALF_LIVES) {
+                double scale = 1 / growth(now);
+                scores.replaceAll((id, score) -> score * scale);
+                landmark = now;
+                refill();
+            }
+            double minStored = MIN_SCORE * growth(now);
+            scores.entrySet().removeIf(entry -> entry.getValue() < minStored && !inTop.containsKey(entry.getKey()));
+            checkpoint = new Checkpoint(landmark, new HashMap<>(scores));
+        }
+
+        try {
+            Files.createDirectories(checkpointDir);
+            Path temp = checkpointDir.resolve(CHECKPOINT_FILE + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ByteBuffer.wrap(objectMapper.writeValueAsBytes(checkpoint));
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                out.force(true);
+            }
+            Files.move(temp, checkpointDir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Checkpointed {} trending scores", checkpoint.scores().size());
+        } catch (IOException e) {
+            // The previous checkpoint is left in place
+            log.error("Could not checkpoint trending scores", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        checkpoint();
+    }
+
+    private synchronized void restore() {
+        Path file = checkpointDir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            Checkpoint checkpoint = objectMapper.readValue(file.toFile(), Checkpoint.class);
+            landmark = checkpoint.landmark();
+            scores.putAll(checkpoint.scores());
+            refill();
+            log.info("Restored {} trending scores", scores.size());
+        } catch (IOException e) {
+            // Trending starts over rather than keeping the application from starting
+            log.error("Could not restore trending scores from {}", file.toAbsolutePath(), e);
+        }
+    }
+}
@@ -0,0 +1,655 @@
+package com.example.proxy.service;
+
+import com.example.proxy.config.InstrumentedConnectionManager;
+import com.example.proxy.config.ProxyConfig;
+import com.example.proxy.service.ProxyResponseCache.CachedResponse;
+import com.example.proxy.service.RequestCoalescer.SharedResponse;
+import com.example.proxy.service.UpstreamRouter.UpstreamInstance;
+import com.example.proxy.service.UpstreamRouter.UpstreamRoute;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.NoHttpResponseException;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Forwards /proxy/** requests to the upstream instance picked by {@link UpstreamRouter}.
+ *
+ * In streaming mode request and response bodies are copied between the servlet streams and the
+ * upstream connection through a fixed-size buffer, so memory per request is bounded and the first
+ * upstream byte reaches the client as soon as it arrives. Buffered mode reads each body fully
+ * before forwarding it. Cacheable GET responses are kept in {@link ProxyResponseCache} and
+ * revalidated with a conditional request once stale, and identical GETs that are in flight at the
+ * same time share one upstream call through {@link RequestCoalescer}. Each route's circuit breaker
+ * and adaptive concurrency limit turn an overloaded or failing upstream into immediate 503s.
+ * GET and HEAD calls are retried after connection failures and, when hedging is on, re-sent to a
+ * second instance once they run past the route's usual latency; both draw on a per-route
+ * {@link RetryBudget} so extra attempts stay a small fraction of traffic.
+ */
+@Service
+public class UpstreamProxyService {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamProxyService.class);
+
+    // Connection-scoped headers that must not be forwarded in either direction
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "te", "trailer", "transfer-encoding", "upgrade", "host", "content-length");
+
+    // Headers a 304 sent from cache should repeat (RFC 9110 section 15.4.5)
+    private static final Set<String> NOT_MODIFIED_HEADERS = Set.of(
+            "cache-control", "content-location", "date", "etag", "expires", "vary", "last-modified");
+
+    private final CloseableHttpClient proxyHttpClient;
+    private final ProxyConfig proxyConfig;
+    private final ProxyResponseCache responseCache;
+    private final RequestCoalescer requestCoalescer;
+    private final UpstreamRouter upstreamRouter;
+    private final MeterRegistry meterRegistry;
+    private final ProxyMetrics proxyMetrics;
+    private final ExecutorService hedgeExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("proxy-hedge-", 0).factory());
+
+    @Value("${server.api.key:}")
+    private String serverApiKey;
+
+    public UpstreamProxyService(CloseableHttpClient proxyHttpClient, ProxyConfig proxyConfig,
+                                ProxyResponseCache responseCache, RequestCoalescer requestCoalescer,
+                                UpstreamRouter upstreamRouter, MeterRegistry meterRegistry, ProxyMetrics proxyMetrics) {
+        this.proxyHttpClient = proxyHttpClient;
+        this.proxyConfig = proxyConfig;
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
+        this.upstreamRouter = upstreamRouter;
+        this.meterRegistry = meterRegistry;
+        this.proxyMetrics = proxyMetrics;
+    }
+
+    /**
+     * Answers the request from cache, a coalesced call or upstream, writing to the exchange's
+     * response. Upstream requests are tracked by the exchange, so completing it cancels them.
+     */
+    public void forward(HttpMethod method, String path, HttpServletRequest request, ProxyExchange exchange) throws IOException {
+        HttpServletResponse response = exchange.response();
+        String query = request.getQueryString();
+        String pathAndQuery = path + (query != null ? "?" + query : "");
+        UpstreamRoute route = upstreamRouter.route(path);
+
+        log.debug("Incoming request: {} {}", method, pathAndQuery);
+
+        boolean shareable = isShareable(method, request);
+        String cacheKey = shareable && proxyConfig.isCacheEnabled() ? pathAndQuery : null;
+        CachedResponse cached = cacheKey != null ? responseCache.lookup(cacheKey, request) : null;
+        if (cached != null && cached.isFresh() && !requiresRevalidation(request)) {
+            log.debug("Serving {} {} from cache", method, path);
+            writeCached(cached, request, response);
+            return;
+        }
+
+        String coalesceKey = null;
+        CompletableFuture<SharedResponse> leader = null;
+        if (shareable && proxyConfig.isCoalesce()) {
+            coalesceKey = requestCoalescer.key(pathAndQuery, request);
+            leader = new CompletableFuture<>();
+            CompletableFuture<SharedResponse> inFlight = requestCoalescer.join(coalesceKey, leader);
+            if (inFlight != null) {
+                SharedResponse shared = requestCoalescer.await(coalesceKey, inFlight);
+                if (shared != null) {
+                    log.debug("Coalesced {} {} onto an in-flight upstream call", method, path);
+                    writeBuffered(shared.status(), shared.headers(), shared.body(), response);
+                    return;
+                }
+                leader = null;
+            }
+        }
+
+        SharedResponse result = null;
+        try {
+            result = exchange(method, path, pathAndQuery, route, request, exchange, shareable, cacheKey, cached);
+        } finally {
+            if (leader != null) {
+                requestCoalescer.complete(coalesceKey, leader, result);
+            }
+        }
+    }
+
+    /**
+     * Performs the upstream call and writes its answer to the client. Returns the buffered response
+     * when it may be handed to coalesced requests, otherwise null.
+     */
+    private SharedResponse exchange(HttpMethod method, String path, String pathAndQuery, UpstreamRoute route,
+                                    HttpServletRequest request, ProxyExchange exchange, boolean shareable,
+                                    String cacheKey, CachedResponse cached) throws IOException {
+        HttpServletResponse response = exchange.response();
+        boolean revalidating = cached != null && canRevalidate(request, cached);
+        UpstreamCall call = new UpstreamCall(method, path, pathAndQuery, route, request, exchange,
+                revalidating ? cached : null);
+
+        if (!admit(route, response)) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        int status = 0;
+        try (Attempt upstream = execute(call)) {
+            ClassicHttpResponse upstreamResponse = upstream.response();
+            status = upstreamResponse.getCode();
+            log.debug("Upstream responded: {} for {} {}", upstreamResponse.getCode(), method, path);
+
+            if (revalidating && upstreamResponse.getCode() == HttpStatus.NOT_MODIFIED.value()) {
+                CachedResponse refreshed = responseCache.revalidated(cached, upstreamResponse);
+                responseCache.store(cacheKey, refreshed);
+                writeCached(refreshed, request, response);
+                return new SharedResponse(refreshed.status(), refreshed.headers(), refreshed.body());
+            }
+
+            byte[] body = copyResponse(upstreamResponse, request, response, shareable);
+            if (body == null) {
+                return null;
+            }
+            if (cacheKey != null) {
+                CachedResponse entry = responseCache.toCacheEntry(upstreamResponse, request, body);
+                if (entry != null) {
+                    responseCache.store(cacheKey, entry);
+                } else if (cached != null) {
+                    responseCache.invalidate(cacheKey);
+                }
+            }
+            // Never hand one client's cookies to another
+            if (upstreamResponse.containsHeader("Set-Cookie")) {
+                return null;
+            }
+            return new SharedResponse(upstreamResponse.getCode(), forwardedHeaders(upstreamResponse), body);
+        } finally {
+            proxyMetrics.recordTotal(route.tag(), status, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Takes a concurrency slot and a circuit breaker permit for the route, or answers 503 straight
+     * away when either is unavailable so callers fail fast instead of queueing behind a slow upstream.
+     */
+    private boolean admit(UpstreamRoute route, HttpServletResponse response) throws IOException {
+        String routeTag = route.tag();
+
+        if (!route.concurrencyLimit().tryAcquire()) {
+            meterRegistry.counter("proxy.upstream.rejected", "route", routeTag, "reason", "concurrency-limit").increment();
+            log.warn("Rejecting proxied request for route '{}': {} calls in flight", routeTag, route.concurrencyLimit().getLimit());
+            writeUnavailable(response, "Upstream is busy. Please try again shortly.", 1);
+            return false;
+        }
+        if (!route.circuitBreaker().tryAcquirePermission()) {
+            route.concurrencyLimit().release(-1, false);
+            meterRegistry.counter("proxy.upstream.rejected", "route", routeTag, "reason", "circuit-open").increment();
+            log.debug("Rejecting proxied request for route '{}': circuit open", routeTag);
+            long retryAfter = Math.max(1, route.circuitBreaker().getRetryAfterMillis() / 1000);
+            writeUnavailable(response, "Upstream is unavailable. Please try again in %d seconds.".formatted(retryAfter), retryAfter);
+            return false;
+        }
+        return true;
+    }
+
+    private void writeUnavailable(HttpServletResponse response, String message, long retryAfterSeconds) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType("application/json");
+        response.getOutputStream().write("{\"success\": false, \"message\": \"%s\"}".formatted(message)
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the upstream exchange. The concurrency slot taken in {@link #admit} is returned once
+     * upstream answers (or fails), and the outcome is recorded against the route's circuit breaker.
+     */
+    private Attempt execute(UpstreamCall call) throws IOException {
+        UpstreamRoute route = call.route();
+        long start = System.nanoTime();
+        boolean answered = false;
+        try {
+            Attempt upstream;
+            if (isIdempotent(call)) {
+                upstream = executeIdempotent(call);
+            } else {
+                UpstreamInstance instance = upstreamRouter.choose(route);
+                upstream = send(call, instance, buildUpstreamRequest(call, instance));
+            }
+            answered = true;
+            route.concurrencyLimit().release(System.nanoTime() - start, false);
+            if (upstream.response().getCode() >= 500) {
+                route.circuitBreaker().onFailure();
+            } else {
+                route.circuitBreaker().onSuccess();
+            }
+            return upstream;
+        } finally {
+            if (!answered) {
+                route.concurrencyLimit().release(-1, true);
+                route.circuitBreaker().onFailure();
+            }
+        }
+    }
+
+    /**
+     * GET and HEAD without a body can be sent more than once safely, so they are hedged when
+     * enabled and retried after connection failures, both within the route's retry budget.
+     */
+    private boolean isIdempotent(UpstreamCall call) {
+        return (call.method() == HttpMethod.GET || call.method() == HttpMethod.HEAD) && !hasBody(call.request());
+    }
+
+    private Attempt executeIdempotent(UpstreamCall call) throws IOException {
+        UpstreamRoute route = call.route();
+        route.retryBudget().deposit();
+
+        UpstreamInstance previous = null;
+        for (int retries = 0; ; retries++) {
+            UpstreamInstance instance = upstreamRouter.choose(route, previous);
+            try {
+                return proxyConfig.isHedging()
+                        ? hedged(call, instance)
+                        : send(call, instance, buildUpstreamRequest(call, instance));
+            } catch (IOException e) {
+                if (!isConnectionFailure(e) || retries >= proxyConfig.getMaxRetries()) {
+                    throw e;
+                }
+                if (!route.retryBudget().tryWithdraw()) {
+                    meterRegistry.counter("proxy.upstream.retry.budget.exhausted", "route", route.tag()).increment();
+                    throw e;
+                }
+                meterRegistry.counter("proxy.upstream.retries", "route", route.tag()).increment();
+                log.debug("Retrying {} {} after connection failure on {}: {}", call.method(), call.path(), instance.baseUrl(), e.toString());
+                previous = instance;
+            }
+        }
+    }
+
+    /**
+     * Failures where upstream never got to answer: the connection was refused or reset, or closed
+     * without a response. Timeouts are not retried, since a second try would only add load to an
+     * upstream that is already slow.
+     */
+    private boolean isConnectionFailure(IOException e) {
+        return e instanceof SocketException || e instanceof NoHttpResponseException;
+    }
+
+    /**
+     * Sends the call to {@code first}, and if it hasn't answered after the route's hedge delay,
+     * sends a second copy to another instance. The first answer wins and the other attempt is
+     * aborted, or closed as soon as it arrives.
+     */
+    private Attempt hedged(UpstreamCall call, UpstreamInstance first) throws IOException {
+        UpstreamRoute route = call.route();
+        HttpUriRequestBase firstRequest = buildUpstreamRequest(call, first);
+        long delayNanos = route.latency().getPercentileNanos();
+        if (delayNanos < 0) {
+            // No latency history yet, so no sensible delay to hedge after
+            return send(call, first, firstRequest);
+        }
+        delayNanos = Math.max(delayNanos, proxyConfig.getHedgeMinDelay().toNanos());
+
+        HedgeRace race = new HedgeRace(call);
+        race.launch(first, firstRequest);
+        HttpUriRequestBase secondRequest = null;
+        try {
+            try {
+                return race.winner.get(delayNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // First attempt is slower than usual, hedge if the budget allows
+            }
+
+            if (route.retryBudget().tryWithdraw()) {
+                UpstreamInstance second = upstreamRouter.choose(route, first);
+                secondRequest = buildUpstreamRequest(call, second);
+                if (race.launch(second, secondRequest)) {
+                    log.debug("Hedging {} {} to {} after {}ms", call.method(), call.path(), second.baseUrl(), delayNanos / 1_000_000);
+                } else {
+                    secondRequest = null;
+                }
+            } else {
+                meterRegistry.counter("proxy.upstream.retry.budget.exhausted", "route", route.tag()).increment();
+            }
+
+            Attempt winner = race.winner.get();
+            if (secondRequest != null) {
+                boolean hedgeWon = winner.request() == secondRequest;
+                (hedgeWon ? firstRequest : secondRequest).cancel();
+                meterRegistry.counter("proxy.upstream.hedges", "route", route.tag(),
+                        "winner", hedgeWon ? "hedge" : "first").increment();
+            }
+            return winner;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            firstRequest.cancel();
+            if (secondRequest != null) {
+                secondRequest.cancel();
+            }
+            throw new InterruptedIOException("Interrupted while waiting for upstream");
+        }
+    }
+
+    /**
+     * Attempts racing for one hedged call. The first successful attempt completes {@code winner};
+     * it only fails once every launched attempt has failed.
+     */
+    private final class HedgeRace {
+
+        private final UpstreamCall call;
+        private final CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        HedgeRace(UpstreamCall call) {
+            this.call = call;
+        }
+
+        boolean launch(UpstreamInstance instance, HttpUriRequestBase upstreamRequest) {
+            pending.incrementAndGet();
+            if (winner.isDone()) {
+                pending.decrementAndGet();
+                return false;
+            }
+            hedgeExecutor.execute(() -> {
+                try {
+                    Attempt attempt = send(call, instance, upstreamRequest);
+                    if (!winner.complete(attempt)) {
+                        attempt.close();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (pending.decrementAndGet() == 0) {
+                        winner.completeExceptionally(e);
+                    }
+                }
+            });
+            return true;
+        }
+    }
+
+    /**
+     * Sends one attempt to one instance. On success the returned {@link Attempt} holds the
+     * instance's outstanding slot until it is closed.
+     */
+    private Attempt send(UpstreamCall call, UpstreamInstance instance, HttpUriRequestBase upstreamRequest) throws IOException {
+        log.debug("Routing {} {} -> {}", call.method(), call.path(), upstreamRequest.getRequestUri());
+
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(call.route().requestConfig());
+
+        long start = System.nanoTime();
+        instance.begin();
+        try {
+            ClassicHttpResponse upstreamResponse = proxyHttpClient.executeOpen(null, upstreamRequest, context);
+            long firstByte = System.nanoTime() - start;
+            call.route().latency().record(firstByte);
+            proxyMetrics.recordFirstByte(call.route().tag(), upstreamResponse.getCode(), firstByte);
+            upstreamRouter.recordSuccess(instance);
+            return new Attempt(instance, upstreamRequest, upstreamResponse);
+        } catch (IOException | RuntimeException e) {
+            instance.end();
+            // An attempt we aborted ourselves says nothing about the instance's health
+            if (!upstreamRequest.isCancelled()) {
+                upstreamRouter.recordFailure(instance);
+            }
+            throw e;
+        } finally {
+            if (context.getAttribute(InstrumentedConnectionManager.CONNECT_NANOS) instanceof Long connectNanos) {
+                proxyMetrics.recordConnect(call.route().tag(), connectNanos);
+            }
+        }
+    }
+
+    /**
+     * Whether the response to this request may be reused for other clients, through the cache or
+     * by coalescing. Responses to authenticated requests are per-user and never shared.
+     */
+    private boolean isShareable(HttpMethod method, HttpServletRequest request) {
+        if (method != HttpMethod.GET) {
+            return false;
+        }
+        String cacheControl = request.getHeader("Cache-Control");
+        return request.getHeader("Authorization") == null
+                && (cacheControl == null || !cacheControl.contains("no-store"));
+    }
+
+    private boolean requiresRevalidation(HttpServletRequest request) {
+        String cacheControl = request.getHeader("Cache-Control");
+        return (cacheControl != null && (cacheControl.contains("no-cache") || cacheControl.contains("max-age=0")))
+                || "no-cache".equals(request.getHeader("Pragma"));
+    }
+
+    /**
+     * Whether the upstream request can be made conditional on the cached validators. Client-supplied
+     * validators take precedence, in which case the upstream answer is passed straight through.
+     */
+    private boolean canRevalidate(HttpServletRequest request, CachedResponse cached) {
+        if (request.getHeader("If-None-Match") != null || request.getHeader("If-Modified-Since") != null) {
+            return false;
+        }
+        return cached.etag() != null || cached.lastModified() != null;
+    }
+
+    private void writeCached(CachedResponse cached, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (cached.notModifiedFor(request)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            for (String[] header : cached.headers()) {
+                if (NOT_MODIFIED_HEADERS.contains(header[0].toLowerCase())) {
+                    response.addHeader(header[0], header[1]);
+                }
+            }
+            return;
+        }
+
+        response.setHeader("Age", String.valueOf(cached.ageSeconds()));
+        writeBuffered(cached.status(), cached.headers(), cached.body(), response);
+    }
+
+    private void writeBuffered(int status, List<String[]> headers, byte[] body, HttpServletResponse response) throws IOException {
+        response.setStatus(status);
+        for (String[] header : headers) {
+            response.addHeader(header[0], header[1]);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private HttpUriRequestBase buildUpstreamRequest(UpstreamCall call, UpstreamInstance instance) throws IOException {
+        HttpMethod method = call.method();
+        HttpServletRequest request = call.request();
+        HttpUriRequestBase upstreamRequest = new HttpUriRequestBase(method.name(), URI.create(instance.baseUrl() + call.pathAndQuery()));
+        call.exchange().track(upstreamRequest);
+
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                continue;
+            }
+            for (String value : Collections.list(request.getHeaders(name))) {
+                upstreamRequest.addHeader(name, value);
+            }
+        }
+
+        // For POST/PUT/DELETE, ensure the server-side API key header is present
+        if (method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.DELETE) {
+            if (serverApiKey != null && !serverApiKey.isEmpty()) {
+                upstreamRequest.setHeader("X-API-Key", serverApiKey);
+                log.debug("Added server-side X-API-Key header for method {}", method);
+            } else {
+                log.warn("Server API key is not configured but a mutating request was proxied: {} {}", method, call.path());
+            }
+        }
+
+        CachedResponse revalidate = call.revalidate();
+        if (revalidate != null) {
+            if (revalidate.etag() != null) {
+                upstreamRequest.setHeader("If-None-Match", revalidate.etag());
+            }
+            if (revalidate.lastModified() != null) {
+                upstreamRequest.setHeader("If-Modified-Since", revalidate.lastModified());
+            }
+        }
+
+        if (hasBody(request)) {
+            ContentType contentType = request.getContentType() != null
+                    ? ContentType.parseLenient(request.getContentType())
+                    : null;
+            if (proxyConfig.isStreaming()) {
+                upstreamRequest.setEntity(new InputStreamEntity(request.getInputStream(), request.getContentLengthLong(), contentType));
+            } else {
+                upstreamRequest.setEntity(new ByteArrayEntity(request.getInputStream().readAllBytes(), contentType));
+            }
+        }
+
+        return upstreamRequest;
+    }
+
+    private boolean hasBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || request.getHeader("Transfer-Encoding") != null;
+    }
+
+    private List<String[]> forwardedHeaders(ClassicHttpResponse upstreamResponse) {
+        List<String[]> headers = new ArrayList<>();
+        for (Header header : upstreamResponse.getHeaders()) {
+            if (!HOP_BY_HOP_HEADERS.contains(header.getName().toLowerCase())) {
+                headers.add(new String[] {header.getName(), header.getValue()});
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Copies status, headers and body to the client. When {@code capture} is set, the body is also
+     * returned if it fits in a cache entry; otherwise returns null.
+     *
+     * Encoded bodies are passed through untouched when the client accepts the encoding, and Tomcat
+     * leaves responses that already carry a Content-Encoding alone. Only when the client can't
+     * accept it is the body decoded on the way through, and such a response is never captured.
+     */
+    private byte[] copyResponse(ClassicHttpResponse upstreamResponse, HttpServletRequest request,
+                                HttpServletResponse response, boolean capture) throws IOException {
+        HttpEntity entity = upstreamResponse.getEntity();
+        Header contentEncoding = upstreamResponse.getFirstHeader("Content-Encoding");
+        boolean decoding = false;
+        if (entity != null && contentEncoding != null
+                && !ContentEncodings.isAcceptable(contentEncoding.getValue(), request.getHeader("Accept-Encoding"))) {
+            HttpEntity decoded = ContentEncodings.decode(entity, contentEncoding.getValue());
+            if (decoded != null) {
+                entity = decoded;
+                decoding = true;
+                capture = false;
+            } else {
+                log.warn("Client does not accept Content-Encoding '{}' and it can't be decoded; passing it through",
+                        contentEncoding.getValue());
+            }
+        }
+
+        response.setStatus(upstreamResponse.getCode());
+        for (String[] header : forwardedHeaders(upstreamResponse)) {
+            if (decoding && header[0].equalsIgnoreCase("Content-Encoding")) {
+                continue;
+            }
+            response.addHeader(header[0], header[1]);
+        }
+
+        if (entity == null) {
+            return capture ? new byte[0] : null;
+        }
+        long contentLength = entity.getContentLength();
+        if (contentLength >= 0) {
+            response.setContentLengthLong(contentLength);
+        }
+        capture = capture && contentLength <= responseCache.getMaxEntryBytes();
+
+        try (InputStream in = entity.getContent()) {
+            OutputStream out = response.getOutputStream();
+            if (proxyConfig.isStreaming()) {
+                return copy(in, out, capture);
+            }
+            byte[] body = in.readAllBytes();
+            out.write(body);
+            return capture && body.length <= responseCache.getMaxEntryBytes() ? body : null;
+        }
+    }
+
+    private byte[] copy(InputStream in, OutputStream out, boolean capture) throws IOException {
+        ByteArrayOutputStream captured = capture ? new ByteArrayOutputStream() : null;
+        byte[] buffer = new byte[proxyConfig.getBufferSize()];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            if (captured != null) {
+                // Give up on capturing as soon as the body outgrows an entry; the client copy is unaffected
+                if (captured.size() + read > responseCache.getMaxEntryBytes()) {
+                    captured = null;
+                } else {
+                    captured.write(buffer, 0, read);
+                }
+            }
+            // Flush whenever upstream has nothing more buffered so the client sees bytes as soon as we do
+            if (in.available() == 0) {
+                out.flush();
+            }
+        }
+        return captured != null ? captured.toByteArray() : null;
+    }
+
+    /**
+     * Everything needed to (re)build the upstream request for one proxied call. {@code revalidate}
+     * is the stale cache entry whose validators make the request conditional, or null.
+     */
+    private record UpstreamCall(HttpMethod method, String path, String pathAndQuery, UpstreamRoute route,
+                                HttpServletRequest request, ProxyExchange exchange, CachedResponse revalidate) {
+    }
+
+    /**
+     * An open upstream response. Closing it releases the connection and the instance's slot.
+     */
+    private record Attempt(UpstreamInstance instance, HttpUriRequestBase request, ClassicHttpResponse response)
+            implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            try {
+                response.close();
+            } finally {
+                instance.end();
+            }
+        }
+    }
+}
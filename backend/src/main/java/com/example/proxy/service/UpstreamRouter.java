@@ -0,0 +1,339 @@
+package com.example.proxy.service;
+
+import com.example.proxy.config.ProxyConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maps proxied paths to pools of upstream instances.
+ *
+ * The longest matching route prefix wins; anything unmatched goes to upstream.base.url. Within a
+ * route each request goes to the healthy instance with the fewest outstanding requests. Instances
+ * are ejected after repeated connection failures or failed health probes and re-admitted once a
+ * probe succeeds. With health checks off (an empty health-check-path) nothing probes them, so an
+ * ejected instance is sent one real request as a trial every health-check-interval instead, and
+ * re-admitted if it succeeds. If every instance in a route is ejected, all of them are used again
+ * rather than refusing traffic outright.
+ */
+@Service
+public class UpstreamRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamRouter.class);
+
+    private final List<UpstreamRoute> routes = new ArrayList<>();
+    private final UpstreamRoute defaultRoute;
+    private final CloseableHttpClient proxyHttpClient;
+    private final ProxyConfig proxyConfig;
+
+    public UpstreamRouter(ProxyConfig proxyConfig,
+                          @Value("${upstream.base.url}") String upstreamBaseUrl,
+                          CloseableHttpClient proxyHttpClient,
+                          PoolingHttpClientConnectionManager connectionManager,
+                          RequestConfig requestConfig,
+                          MeterRegistry meterRegistry) {
+        this.proxyConfig = proxyConfig;
+        this.proxyHttpClient = proxyHttpClient;
+
+        for (ProxyConfig.Route route : proxyConfig.getRoutes()) {
+            if (route.getPrefix() == null || route.getInstances().isEmpty()) {
+                throw new IllegalStateException("Proxy route needs a prefix and at least one instance: " + route.getPrefix());
+            }
+            routes.add(createRoute(route.getPrefix(), route.getInstances(), route.getResponseTimeout(),
+                    route.getMaxConnectionsPerInstance(), requestConfig, connectionManager, meterRegistry));
+        }
+        routes.sort(Comparator.comparingInt((UpstreamRoute r) -> r.prefix().length()).reversed());
+
+        this.defaultRoute = createRoute("", List.of(upstreamBaseUrl), null, 0, requestConfig, connectionManager, meterRegistry);
+
+        log.info("Proxy routes: {} configured, unmatched paths go to {}", routes.size(), upstreamBaseUrl);
+    }
+
+    private static HttpHost routeHost(String baseUrl) {
+        return RoutingSupport.normalize(HttpHost.create(URI.create(baseUrl)), DefaultSchemePortResolver.INSTANCE);
+    }
+
+    private UpstreamRoute createRoute(String prefix, List<String> urls, Duration responseTimeout,
+                                      int maxConnectionsPerInstance, RequestConfig defaults,
+                                      PoolingHttpClientConnectionManager connectionManager,
+                                      MeterRegistry meterRegistry) {
+        RequestConfig requestConfig = responseTimeout != null
+                ? RequestConfig.copy(defaults).setResponseTimeout(Timeout.of(responseTimeout)).build()
+                : defaults;
+
+        String routeTag = prefix.isEmpty() ? "default" : prefix;
+        List<UpstreamInstance> instances = new ArrayList<>();
+        for (String url : urls) {
+            String baseUrl = url.trim().replaceAll("/+$", "");
+            UpstreamInstance instance = new UpstreamInstance(baseUrl);
+            instances.add(instance);
+
+            // Each instance is its own HttpRoute, so the pool keeps separate per-instance limits. The
+            // route planner fills in the scheme's default port, so the host must have it too to match.
+            if (maxConnectionsPerInstance > 0) {
+                HttpHost host = routeHost(baseUrl);
+                connectionManager.setMaxPerRoute(new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName())),
+                        maxConnectionsPerInstance);
+            }
+
+            Gauge.builder("proxy.upstream.outstanding", instance, i -> i.outstanding.get())
+                    .description("Requests currently in flight to an upstream instance")
+                    .tag("route", routeTag).tag("instance", baseUrl)
+                    .register(meterRegistry);
+            Gauge.builder("proxy.upstream.healthy", instance, i -> i.healthy ? 1 : 0)
+                    .description("1 when the upstream instance is in rotation, 0 when ejected")
+                    .tag("route", routeTag).tag("instance", baseUrl)
+                    .register(meterRegistry);
+        }
+        CircuitBreaker circuitBreaker = new CircuitBreaker(proxyConfig.getCircuitWindowSize(),
+                proxyConfig.getCircuitMinimumCalls(), proxyConfig.getCircuitFailureRateThreshold(),
+                proxyConfig.getCircuitOpenDuration().toMillis(), proxyConfig.getCircuitHalfOpenCalls());
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(proxyConfig.getConcurrencyInitialLimit(),
+                proxyConfig.getConcurrencyMinLimit(), proxyConfig.getConcurrencyMaxLimit());
+
+        Gauge.builder("proxy.upstream.circuit.state", circuitBreaker, b -> b.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .tag("route", routeTag)
+                .register(meterRegistry);
+        Gauge.builder("proxy.upstream.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Current adaptive limit on in-flight upstream calls")
+                .tag("route", routeTag)
+                .register(meterRegistry);
+        Gauge.builder("proxy.upstream.concurrency.inflight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Upstream calls currently holding a concurrency slot")
+                .tag("route", routeTag)
+                .register(meterRegistry);
+
+        LatencyTracker latency = new LatencyTracker(proxyConfig.getHedgePercentile(), proxyConfig.getHedgeWindow().toNanos());
+        RetryBudget retryBudget = new RetryBudget(proxyConfig.getRetryBudgetRatio(), proxyConfig.getRetryBudgetMinPerSecond());
+
+        Gauge.builder("proxy.upstream.retry.budget", retryBudget, RetryBudget::getBalance)
+                .description("Retries and hedged requests the route can currently afford")
+                .tag("route", routeTag)
+                .register(meterRegistry);
+
+        return new UpstreamRoute(prefix, instances, requestConfig, circuitBreaker, concurrencyLimit, latency, retryBudget);
+    }
+
+    /**
+     * All routes, the default route last.
+     */
+    public List<UpstreamRoute> routes() {
+        List<UpstreamRoute> all = new ArrayList<>(routes);
+        all.add(defaultRoute);
+        return all;
+    }
+
+    public UpstreamRoute route(String path) {
+        for (UpstreamRoute route : routes) {
+            if (route.matches(path)) {
+                return route;
+            }
+        }
+        return defaultRoute;
+    }
+
+    /**
+     * Picks the healthy instance with the fewest outstanding requests, breaking ties from a random
+     * starting point so equally loaded instances share traffic.
+     */
+    public UpstreamInstance choose(UpstreamRoute route) {
+        return choose(route, null);
+    }
+
+    /**
+     * Like {@link #choose(UpstreamRoute)}, but passes over {@code avoid} while another healthy
+     * instance exists, so a retry or hedged request lands somewhere else.
+     */
+    public UpstreamInstance choose(UpstreamRoute route, UpstreamInstance avoid) {
+        List<UpstreamInstance> instances = route.instances();
+        int size = instances.size();
+        int start = size > 1 ? ThreadLocalRandom.current().nextInt(size) : 0;
+
+        if (size > 1 && !healthChecksEnabled()) {
+            long now = System.currentTimeMillis();
+            for (UpstreamInstance candidate : instances) {
+                if (!candidate.healthy && candidate != avoid
+                        && candidate.claimTrial(now, proxyConfig.getHealthCheckInterval().toMillis())) {
+                    log.info("Sending a trial request to ejected upstream instance {}", candidate.baseUrl());
+                    return candidate;
+                }
+            }
+        }
+
+        UpstreamInstance best = null;
+        for (int i = 0; i < size; i++) {
+            UpstreamInstance candidate = instances.get((start + i) % size);
+            if (candidate.healthy && candidate != avoid
+                    && (best == null || candidate.outstanding.get() < best.outstanding.get())) {
+                best = candidate;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        if (avoid != null && avoid.healthy) {
+            return avoid;
+        }
+
+        if (size > 1) {
+            log.warn("No healthy upstream instances for route '{}', using all of them", route.prefix());
+        }
+        for (int i = 0; i < size; i++) {
+            UpstreamInstance candidate = instances.get((start + i) % size);
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    public void recordSuccess(UpstreamInstance instance) {
+        instance.consecutiveFailures.set(0);
+        if (!instance.healthy) {
+            instance.healthy = true;
+            log.info("Upstream instance {} is answering again, returning it to rotation", instance.baseUrl());
+        }
+    }
+
+    public void recordFailure(UpstreamInstance instance) {
+        if (instance.consecutiveFailures.incrementAndGet() >= proxyConfig.getUnhealthyThreshold() && instance.healthy) {
+            instance.nextTrialAt.set(System.currentTimeMillis() + proxyConfig.getHealthCheckInterval().toMillis());
+            instance.healthy = false;
+            log.warn("Ejecting upstream instance {} after {} consecutive failures",
+                    instance.baseUrl(), instance.consecutiveFailures.get());
+        }
+    }
+
+    private boolean healthChecksEnabled() {
+        String healthPath = proxyConfig.getHealthCheckPath();
+        return healthPath != null && !healthPath.isEmpty();
+    }
+
+    @Scheduled(fixedDelayString = "${upstream.proxy.health-check-interval:10s}")
+    public void checkHealth() {
+        if (!healthChecksEnabled()) {
+            return;
+        }
+        String healthPath = proxyConfig.getHealthCheckPath();
+
+        RequestConfig probeConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(proxyConfig.getHealthCheckTimeout()))
+                .setResponseTimeout(Timeout.of(proxyConfig.getHealthCheckTimeout()))
+                .build();
+
+        // Single-instance routes always get traffic anyway, so only pools are probed
+        List<UpstreamInstance> all = new ArrayList<>();
+        routes.stream().filter(route -> route.instances().size() > 1).forEach(route -> all.addAll(route.instances()));
+
+        try (ExecutorService probes = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (UpstreamInstance instance : all) {
+                probes.execute(() -> probe(instance, healthPath, probeConfig));
+            }
+        }
+    }
+
+    private void probe(UpstreamInstance instance, String healthPath, RequestConfig probeConfig) {
+        HttpGet probe = new HttpGet(instance.baseUrl() + healthPath);
+        probe.setConfig(probeConfig);
+        boolean up;
+        try {
+            up = proxyHttpClient.execute(probe, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode() < 500;
+            });
+        } catch (Exception e) {
+            up = false;
+        }
+
+        if (up) {
+            recordSuccess(instance);
+        } else {
+            recordFailure(instance);
+        }
+    }
+
+    public record UpstreamRoute(String prefix, List<UpstreamInstance> instances, RequestConfig requestConfig,
+                                CircuitBreaker circuitBreaker, AdaptiveConcurrencyLimit concurrencyLimit,
+                                LatencyTracker latency, RetryBudget retryBudget) {
+
+        /**
+         * Name used to tag this route's metrics.
+         */
+        public String tag() {
+            return prefix.isEmpty() ? "default" : prefix;
+        }
+
+        boolean matches(String path) {
+            return path.equals(prefix) || path.startsWith(prefix.endsWith("/") ? prefix : prefix + "/");
+        }
+    }
+
+    public static class UpstreamInstance {
+
+        private final String baseUrl;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        // When an ejected instance may next get a trial request, if health checks are off
+        private final AtomicLong nextTrialAt = new AtomicLong();
+        private volatile boolean healthy = true;
+
+        UpstreamInstance(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String baseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * Claims the one trial request due at {@code now}, if any, and schedules the next one a
+         * cool-down later in case this one is cancelled or fails.
+         */
+        boolean claimTrial(long now, long coolDownMillis) {
+            long due = nextTrialAt.get();
+            return now >= due && nextTrialAt.compareAndSet(due, now + coolDownMillis);
+        }
+
+        public void begin() {
+            outstanding.incrementAndGet();
+        }
+
+        public void end() {
+            outstanding.decrementAndGet();
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.proxy.service;
+
+import com.example.proxy.repository.ResourceFavoriteRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Each recently active user's favorite resource ids as a compressed bitmap, so "which of these
+ * resources has this user favorited" costs one bitmap lookup per id instead of a query each.
+ *
+ * A user's bitmap is loaded with one query on first use. Bitmaps are never modified in place:
+ * a toggle swaps in an updated copy once its transaction commits, so readers need no locking.
+ */
+@Service
+public class UserFavoritesCache {
+
+    private final LoadingCache<String, Roaring64Bitmap> favorites;
+
+    public UserFavoritesCache(ResourceFavoriteRepository favoriteRepository, MeterRegistry meterRegistry,
+                              @Value("${resources.favorites.cached-users:10000}") long cachedUsers) {
+        this.favorites = Caffeine.newBuilder()
+                .maximumSize(cachedUsers)
+                .recordStats()
+                .build(username -> {
+                    Roaring64Bitmap bitmap = new Roaring64Bitmap();
+                    favoriteRepository.findResourceIdsByUsername(username).forEach(bitmap::addLong);
+                    bitmap.runOptimize();
+                    return bitmap;
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, favorites, "resources.favorites");
+    }
+
+    public boolean isFavorited(String username, Long resourceId) {
+        return favorites.get(username).contains(resourceId);
+    }
+
+    /**
+     * Favorite status of each of the given resources, in the order given.
+     */
+    public Map<Long, Boolean> statuses(String username, Collection<Long> resourceIds) {
+        Roaring64Bitmap bitmap = favorites.get(username);
+        Map<Long, Boolean> statuses = new LinkedHashMap<>();
+        for (Long id : resourceIds) {
+            statuses.put(id, bitmap.contains(id));
+        }
+        return statuses;
+    }
+
+    /**
+     * Records a favorite added or removed, once the surrounding transaction commits. Users whose
+     * bitmap isn't loaded are left alone; they load the committed state on next use.
+     */
+    public void favoriteChanged(String username, Long resourceId, boolean favorited) {
+        SearchIndexService.afterCommit(() -> favorites.asMap().computeIfPresent(username, (user, current) -> {
+            Roaring64Bitmap updated = current.clone();
+            if (favorited) {
+                updated.addLong(resourceId);
+            } else {
+                updated.removeLong(resourceId);
+            }
+            return updated;
+        }));
+    }
+
+    /**
+     * Forgets a deleted resource in every loaded bitmap.
+     */
+    public void resourceRemoved(Long resourceId) {
+        SearchIndexService.afterCommit(() -> favorites.asMap().replaceAll((user, current) -> {
+            if (!current.contains(resourceId)) {
+                return current;
+            }
+            Roaring64Bitmap updated = current.clone();
+            updated.removeLong(resourceId);
+            return updated;
+        }));
+    }
+}
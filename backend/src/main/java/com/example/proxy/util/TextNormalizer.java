@@ -0,0 +1,47 @@
+package com.example.proxy.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes English and Nepali text for matching, so that a query and a title that read the same
+ * compare equal.
+ *
+ * Applies NFKC, lower-cases, and folds the Devanagari spellings that vary between keyboards and
+ * fonts: nukta forms (ज़ and ज) become the plain letter, candrabindu becomes anusvara, and
+ * zero-width joiners and non-joiners are dropped wherever they appear. They only choose between
+ * glyph forms, such as a half form after a halant, and never change what the text says.
+ * Whitespace is collapsed.
+ * Whatever is stored in a normalized column and whatever is matched against it must both go
+ * through here.
+ */
+public final class TextNormalizer {
+
+    private static final char NUKTA = '\u093C';
+    private static final char CANDRABINDU = '\u0901';
+    private static final char ANUSVARA = '\u0902';
+    private static final char ZWNJ = '\u200C';
+    private static final char ZWJ = '\u200D';
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        // NFKC also splits the precomposed nukta letters (U+0958-U+095F) into letter + nukta
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder folded = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c == NUKTA || c == ZWJ || c == ZWNJ) {
+                continue;
+            }
+            folded.append(c == CANDRABINDU ? ANUSVARA : c);
+        }
+        return WHITESPACE.matcher(folded).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.proxy;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Holds far more proxied calls open on a slow upstream than Tomcat has worker threads, and checks
+ * that /api requests are still answered promptly: the async proxy hands each call to a virtual
+ * thread and returns its worker to the pool.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.proxy=INFO",
+        "logging.level.org.springframework.web=INFO",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO",
+        "server.tomcat.threads.max=" + ProxyAsyncLoadTest.TOMCAT_THREADS,
+        "server.tomcat.threads.min-spare=" + ProxyAsyncLoadTest.TOMCAT_THREADS,
+        "upstream.proxy.async=true",
+        "upstream.proxy.max-connections=1000",
+        "upstream.proxy.max-connections-per-route=1000",
+        "upstream.proxy.concurrency-initial-limit=1000"
+})
+@ActiveProfiles("dev")
+class ProxyAsyncLoadTest {
+
+    static final int TOMCAT_THREADS = 8;
+    private static final int PARKED_CALLS = 200;
+    private static final Duration UPSTREAM_DELAY = Duration.ofSeconds(2);
+
+    @TempDir
+    static Path dataDir;
+
+    private static final StubUpstream upstream = startUpstream();
+
+    @LocalServerPort
+    private int port;
+
+    private static StubUpstream startUpstream() {
+        try {
+            return new StubUpstream(exchange -> {
+                Thread.sleep(UPSTREAM_DELAY.toMillis());
+                StubUpstream.respond(exchange, 200, "slow " + exchange.getRequestURI().getPath());
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("upstream.base.url", upstream::baseUrl);
+        registry.add("events.registrations.data-dir", () -> dataDir.resolve("event-registrations").toString());
+        registry.add("resources.trending.checkpoint-dir", () -> dataDir.resolve("trending").toString());
+        registry.add("search.documents.cache-dir", () -> dataDir.resolve("document-text").toString());
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.close();
+    }
+
+    @Test
+    void apiStaysResponsiveWhileProxiedCallsWaitOnUpstream() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        // Warm the endpoint up first, so the timing below measures waiting for a worker, not a cold start
+        assertThat(client.send(get("/api/resources/featured"), HttpResponse.BodyHandlers.ofString()).statusCode())
+                .isEqualTo(200);
+
+        // Distinct paths, so the proxy can't coalesce them into one upstream call
+        List<CompletableFuture<HttpResponse<String>>> proxied = new ArrayList<>();
+        for (int i = 0; i < PARKED_CALLS; i++) {
+            proxied.add(client.sendAsync(get("/proxy/slow/" + i), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        // Once upstream holds more calls than Tomcat has workers, blocking handlers would have none left
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (upstream.inFlight() <= TOMCAT_THREADS * 4 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(upstream.inFlight()).isGreaterThan(TOMCAT_THREADS * 4);
+
+        long start = System.nanoTime();
+        HttpResponse<String> api = client.send(get("/api/resources/featured"), HttpResponse.BodyHandlers.ofString());
+        long apiMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(api.statusCode()).isEqualTo(200);
+        assertThat(apiMillis).isLessThan(UPSTREAM_DELAY.toMillis() / 2);
+        assertThat(upstream.inFlight()).as("proxied calls still parked upstream").isGreaterThan(TOMCAT_THREADS);
+
+        for (int i = 0; i < PARKED_CALLS; i++) {
+            HttpResponse<String> response = proxied.get(i).get(30, TimeUnit.SECONDS);
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.body()).isEqualTo("slow /slow/" + i);
+        }
+        assertThat(upstream.peakInFlight()).isGreaterThanOrEqualTo(PARKED_CALLS / 2);
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+}
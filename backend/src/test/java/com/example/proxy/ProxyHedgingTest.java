@@ -0,0 +1,235 @@
+package com.example.proxy;
+
+import com.example.proxy.config.ProxyConfig;
+import com.example.proxy.service.RetryBudget;
+import com.example.proxy.service.UpstreamRouter;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hedged requests and the retry budget against two stub upstream instances. The first attempt at a
+ * path under /stall/ hangs for {@link #STALL}, any later attempt answers at once, and the first
+ * attempt at a path under /drop/ closes the connection without answering. Each test has a route of
+ * its own, so one test's latency history and budget don't leak into another.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.proxy=INFO",
+        "logging.level.org.springframework.web=INFO",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO",
+        "upstream.proxy.hedging=true",
+        "upstream.proxy.hedge-window=1s",
+        // The budget only holds what a test gives it, so draining it sticks
+        "upstream.proxy.retry-budget-min-per-second=0"
+})
+@ActiveProfiles("dev")
+class ProxyHedgingTest {
+
+    private static final Duration STALL = Duration.ofSeconds(1);
+    private static final String[] ROUTES = {"/hedge", "/post", "/drained", "/retry", "/before", "/after"};
+
+    @TempDir
+    static Path dataDir;
+
+    // Attempts seen per path, across both instances
+    private static final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private static final StubUpstream first = startUpstream();
+    private static final StubUpstream second = startUpstream();
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Autowired
+    private UpstreamRouter upstreamRouter;
+
+    @Autowired
+    private ProxyConfig proxyConfig;
+
+    @LocalServerPort
+    private int port;
+
+    private static StubUpstream startUpstream() {
+        try {
+            return new StubUpstream(exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                int attempt = attempts.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+                if (attempt == 1 && path.contains("/stall/")) {
+                    Thread.sleep(STALL.toMillis());
+                } else if (attempt == 1 && path.contains("/drop/")) {
+                    throw new IOException("Dropping the first attempt");
+                }
+                StubUpstream.respond(exchange, 200, "attempt " + attempt);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        for (int i = 0; i < ROUTES.length; i++) {
+            registry.add("upstream.proxy.routes[" + i + "].prefix", ROUTES[i]::toString);
+            registry.add("upstream.proxy.routes[" + i + "].instances", () -> first.baseUrl() + "," + second.baseUrl());
+        }
+        registry.add("events.registrations.data-dir", () -> dataDir.resolve("event-registrations").toString());
+        registry.add("resources.trending.checkpoint-dir", () -> dataDir.resolve("trending").toString());
+        registry.add("search.documents.cache-dir", () -> dataDir.resolve("document-text").toString());
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void hedgeWinsWhenTheFirstAttemptStalls() throws Exception {
+        warmUp("/hedge");
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = send(get("/hedge/stall/1"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("attempt 2");
+        assertThat(elapsedMillis).isLessThan(STALL.toMillis() / 2);
+        // One attempt on each instance
+        assertThat(first.requests()).contains("GET /hedge/stall/1");
+        assertThat(second.requests()).contains("GET /hedge/stall/1");
+    }
+
+    @Test
+    void postIsNeverHedged() throws Exception {
+        warmUp("/post");
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/post/stall/1"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .header("Content-Type", "application/json")
+                .build());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("attempt 1");
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(STALL.toMillis());
+        assertThat(attempts.get("/post/stall/1")).hasValue(1);
+    }
+
+    @Test
+    void exhaustedBudgetStopsHedging() throws Exception {
+        warmUp("/drained");
+        drain(upstreamRouter.route("/drained").retryBudget());
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = send(get("/drained/stall/1"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(response.body()).isEqualTo("attempt 1");
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(STALL.toMillis());
+        assertThat(attempts.get("/drained/stall/1")).hasValue(1);
+    }
+
+    @Test
+    void exhaustedBudgetStopsRetries() throws Exception {
+        // A dropped connection is retried while the budget lasts
+        HttpResponse<String> retried = send(get("/retry/drop/1"));
+        assertThat(retried.statusCode()).isEqualTo(200);
+        assertThat(retried.body()).isEqualTo("attempt 2");
+
+        drain(upstreamRouter.route("/retry").retryBudget());
+
+        HttpResponse<String> failed = send(get("/retry/drop/2"));
+        assertThat(failed.statusCode()).isEqualTo(502);
+        assertThat(attempts.get("/retry/drop/2")).hasValue(1);
+    }
+
+    /**
+     * The same traffic, one stalled call in 25, without and then with hedging. The stalls set the
+     * tail without hedging and disappear from it with hedging.
+     */
+    @Test
+    void hedgingCutsTheTailLatency() throws Exception {
+        warmUp("/before");
+        warmUp("/after");
+
+        Histogram before;
+        proxyConfig.setHedging(false);
+        try {
+            before = latencies("/before");
+        } finally {
+            proxyConfig.setHedging(true);
+        }
+        Histogram after = latencies("/after");
+
+        assertThat(before.getValueAtPercentile(99)).as("p99 without hedging, ms")
+                .isGreaterThanOrEqualTo(STALL.toMillis());
+        assertThat(after.getValueAtPercentile(99)).as("p99 with hedging, ms")
+                .isLessThan(STALL.toMillis() / 2);
+        assertThat(after.getValueAtPercentile(50)).as("p50 with hedging, ms")
+                .isLessThan(STALL.toMillis() / 10);
+    }
+
+    private Histogram latencies(String route) throws Exception {
+        Histogram histogram = new Histogram(2);
+        for (int i = 0; i < 50; i++) {
+            String path = route + (i % 25 == 0 ? "/stall/" : "/fast/") + i;
+            long start = System.nanoTime();
+            assertThat(send(get(path)).statusCode()).isEqualTo(200);
+            histogram.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        return histogram;
+    }
+
+    /**
+     * Sends fast calls until the route has enough latency history to hedge after.
+     */
+    private void warmUp(String route) throws Exception {
+        UpstreamRouter.UpstreamRoute upstreamRoute = upstreamRouter.route(route + "/");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        for (int i = 0; upstreamRoute.latency().getPercentileNanos() < 0; i++) {
+            assertThat(System.nanoTime()).as("route %s never got a hedge delay", route).isLessThan(deadline);
+            assertThat(send(get(route + "/warm-up/" + i)).statusCode()).isEqualTo(200);
+        }
+    }
+
+    private static void drain(RetryBudget budget) {
+        while (budget.tryWithdraw()) {
+            // spend every token
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/proxy" + path);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.proxy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in upstream for proxy tests: a JDK HttpServer on a loopback port that answers each
+ * request on its own virtual thread, so any number of calls can be held open at once. Records the
+ * requests it received and how many were in flight at the peak. Health checks are answered 200
+ * and not recorded.
+ */
+class StubUpstream implements AutoCloseable {
+
+    @FunctionalInterface
+    interface Handler {
+        void handle(HttpExchange exchange) throws Exception;
+    }
+
+    // Room for every test's burst of connections before the accept loop catches up
+    private static final int BACKLOG = 1024;
+
+    private final HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    StubUpstream(Handler handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/health")) {
+                respond(exchange, 200, "OK");
+                return;
+            }
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                handler.handle(exchange);
+            } catch (Exception e) {
+                // A cancelled proxy call closes its connection mid-response
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        // Keep the proxy from caching or coalescing what the tests count
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    List<String> requests() {
+        return requests;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
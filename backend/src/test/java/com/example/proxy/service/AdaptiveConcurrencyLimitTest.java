@@ -0,0 +1,87 @@
+package com.example.proxy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long NO_LOAD_RTT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void rejectsCallsBeyondTheLimitUntilASlotIsReleased() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+
+        limit.release(-1, false);
+
+        assertThat(limit.getInFlight()).isEqualTo(1);
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.getLimit()).as("no latency sample, no change").isEqualTo(2);
+    }
+
+    @Test
+    void droppedCallsCutTheLimitDownToTheMinimum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 100);
+
+        acquire(limit, 1);
+        limit.release(-1, true);
+        assertThat(limit.getLimit()).isEqualTo(18);
+
+        for (int i = 0; i < 50; i++) {
+            acquire(limit, 1);
+            limit.release(-1, true);
+        }
+        assertThat(limit.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void growsWhileLatencyStaysAtTheNoLoadBaseline() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100);
+        acquire(limit, 10);
+
+        releaseAll(limit, NO_LOAD_RTT);
+
+        assertThat(limit.getLimit()).isGreaterThan(10);
+    }
+
+    @Test
+    void shrinksWhenLatencyShowsAQueueUpstream() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 1, 1000);
+        acquire(limit, 100);
+        limit.release(NO_LOAD_RTT, false);
+
+        releaseAll(limit, NO_LOAD_RTT * 10);
+
+        assertThat(limit.getLimit()).isLessThan(100);
+    }
+
+    @Test
+    void doesNotGrowALimitThatIsNotUsed() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100);
+
+        for (int i = 0; i < 20; i++) {
+            acquire(limit, 1);
+            limit.release(NO_LOAD_RTT, false);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    private static void acquire(AdaptiveConcurrencyLimit limit, int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+        }
+    }
+
+    private static void releaseAll(AdaptiveConcurrencyLimit limit, long rttNanos) {
+        while (limit.getInFlight() > 0) {
+            limit.release(rttNanos, false);
+        }
+    }
+}
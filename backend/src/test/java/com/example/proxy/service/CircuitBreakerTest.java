@@ -0,0 +1,91 @@
+package com.example.proxy.service;
+
+import com.example.proxy.service.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    @Test
+    void opensOnceTheFailureRateReachesTheThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 60_000, 2);
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.getState()).as("fewer than the minimum calls").isEqualTo(State.CLOSED);
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.getRetryAfterMillis()).isPositive();
+    }
+
+    @Test
+    void forgetsOutcomesThatLeftTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 75, 60_000, 2);
+        breaker.onFailure();
+        breaker.onFailure();
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+        }
+
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.getFailureRate()).isEqualTo(25);
+    }
+
+    @Test
+    void closesAfterEveryTrialCallSucceeds() {
+        CircuitBreaker breaker = open(new CircuitBreaker(10, 2, 50, 0, 2));
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).as("only two trial calls").isFalse();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        breaker.onSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.getFailureRate()).isZero();
+    }
+
+    @Test
+    void reopensOnAFailedTrialCall() throws InterruptedException {
+        CircuitBreaker breaker = open(new CircuitBreaker(10, 2, 50, 50, 2));
+        Thread.sleep(60);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.getRetryAfterMillis()).isPositive();
+    }
+
+    @Test
+    void ignoresOutcomesReportedWhileOpen() throws InterruptedException {
+        CircuitBreaker breaker = open(new CircuitBreaker(10, 2, 50, 50, 2));
+        Thread.sleep(60);
+
+        // Calls admitted before the breaker opened finish late; they must not restart the open period
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+    }
+
+    private static CircuitBreaker open(CircuitBreaker breaker) {
+        breaker.onFailure();
+        breaker.onFailure();
+        return breaker;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.proxy.service;
+
+import com.example.proxy.config.EventRegistrationConfig;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventRegistrationStoreTest {
+
+    private static final int USERS = 2000;
+
+    @TempDir
+    Path dataDir;
+
+    // The race window is narrow; a few rounds make a regression likely to show up
+    @RepeatedTest(5)
+    void changesRacingSnapshotsSurviveReload() throws Exception {
+        EventRegistrationStore store = new EventRegistrationStore(config());
+        store.defineEvent("event", USERS);
+
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(9);
+        try {
+            Future<?> snapshots = pool.submit(() -> {
+                start.await();
+                while (!done.get()) {
+                    store.snapshot();
+                }
+                return null;
+            });
+            Future<?>[] writers = new Future<?>[8];
+            for (int w = 0; w < writers.length; w++) {
+                int writer = w;
+                writers[w] = pool.submit(() -> {
+                    start.await();
+                    for (int i = writer; i < USERS; i += writers.length) {
+                        store.register("event", "user" + i, "user" + i + "@example.org", "User " + i);
+                        // Every third registration is cancelled again
+                        if (i % 3 == 0) {
+                            store.cancel("event", "user" + i);
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            done.set(true);
+            snapshots.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < USERS; i++) {
+            if (i % 3 != 0) {
+                expected.add("user" + i);
+            }
+        }
+        assertThat(usernames(store)).isEqualTo(expected);
+
+        // Reloaded as after a crash: no final snapshot, only what the snapshots and logs hold
+        EventRegistrationStore reloaded = new EventRegistrationStore(config());
+        assertThat(usernames(reloaded)).isEqualTo(expected);
+    }
+
+    private EventRegistrationConfig config() {
+        EventRegistrationConfig config = new EventRegistrationConfig();
+        config.setDataDir(dataDir.toString());
+        config.setFsync(false);
+        return config;
+    }
+
+    private static Set<String> usernames(EventRegistrationStore store) {
+        return store.getRegistrations("event").stream()
+                .map(EventRegistrationStore.Registration::username)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.proxy.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvertedIndexTest {
+
+    @Test
+    void ranksTitleMatchesAboveBodyMatches() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Field notes", "A short guide to gardening");
+        index.put(2, "Gardening basics", "Field notes for beginners");
+
+        assertThat(index.search("gardening", 0)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void ranksFrequentTermsInShorterDocumentsFirst() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Report", "solar panels and wind turbines and hydro dams and more");
+        index.put(2, "Report", "solar solar solar");
+        index.put(3, "Report", "solar panels");
+        index.put(4, "Report", "wind turbines");
+
+        assertThat(index.search("solar", 0)).containsExactly(2L, 3L, 1L);
+    }
+
+    @Test
+    void matchesEveryQueryTermUpToTheLimit() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Annual report", "budget");
+        index.put(2, "Annual report", "audit");
+        index.put(3, "Annual report", "budget");
+
+        assertThat(index.search("report audit", 0)).containsExactly(2L);
+        assertThat(index.search("report missing", 0)).isEmpty();
+        assertThat(index.search("report", 2)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void expandsTermsOfTheMinimumPrefixLength() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Networking", "");
+        index.put(2, "Net", "");
+        index.put(3, "Nest", "");
+
+        assertThat(index.search("net", 0)).as("exact word first").containsExactly(2L, 1L);
+        assertThat(index.search("netw", 0)).containsExactly(1L);
+    }
+
+    @Test
+    void matchesShorterTermsOnlyAsWholeWords() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Networking", "");
+        index.put(2, "Ne", "");
+
+        assertThat(index.search("ne", 0)).containsExactly(2L);
+        assertThat(index.search("n", 0)).isEmpty();
+    }
+
+    @Test
+    void replacesAndRemovesDocuments() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Gardening", "");
+        index.put(1, "Cooking", "");
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("gardening", 0)).isEmpty();
+        assertThat(index.search("cooking", 0)).containsExactly(1L);
+
+        index.remove(1);
+
+        assertThat(index.size()).isZero();
+        assertThat(index.search("cooking", 0)).isEmpty();
+    }
+}
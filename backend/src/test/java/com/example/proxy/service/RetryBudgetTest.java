@@ -0,0 +1,60 @@
+package com.example.proxy.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBudgetTest {
+
+    @Test
+    void startsWithABankedBurstThenRefuses() {
+        RetryBudget budget = new RetryBudget(0.1, 0);
+
+        assertThat(drain(budget)).isEqualTo(10);
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+
+    @Test
+    void firstAttemptsEarnExtraAttemptsAtTheRatio() {
+        RetryBudget budget = new RetryBudget(0.25, 0);
+        drain(budget);
+
+        for (int i = 0; i < 3; i++) {
+            budget.deposit();
+        }
+        assertThat(budget.tryWithdraw()).as("three deposits of a quarter").isFalse();
+
+        budget.deposit();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+
+    @Test
+    void capsTheBalanceAtTheBankedBurst() {
+        RetryBudget budget = new RetryBudget(1, 0);
+
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+
+        assertThat(budget.getBalance()).isEqualTo(10);
+    }
+
+    @Test
+    void perSecondAllowanceRefillsAQuietRoute() throws InterruptedException {
+        RetryBudget budget = new RetryBudget(0, 100);
+        assertThat(drain(budget)).as("ten seconds of allowance").isGreaterThanOrEqualTo(1000);
+
+        Thread.sleep(50);
+
+        assertThat(budget.tryWithdraw()).isTrue();
+    }
+
+    private static int drain(RetryBudget budget) {
+        int withdrawn = 0;
+        while (budget.tryWithdraw()) {
+            withdrawn++;
+        }
+        return withdrawn;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.proxy.service;
+
+import com.example.proxy.service.SuggestionTrie.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionTrieTest {
+
+    @Test
+    void suggestsEntriesByAnyWordPrefix() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put("resource:1", resource(1, "Annual Report 2023", 5));
+        trie.put("resource:2", resource(2, "Policy Brief", 3));
+
+        assertThat(ids(trie.suggest("ann", 10))).containsExactly(1L);
+        assertThat(ids(trie.suggest("rep", 10))).containsExactly(1L);
+        assertThat(ids(trie.suggest("2023", 10))).containsExactly(1L);
+        assertThat(ids(trie.suggest("brief", 10))).containsExactly(2L);
+        assertThat(trie.suggest("xyz", 10)).isEmpty();
+    }
+
+    @Test
+    void matchesTypedWordsInARow() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put("resource:1", resource(1, "Annual-Report 2023", 5));
+        trie.put("resource:2", resource(2, "Annual Budget", 9));
+
+        assertThat(ids(trie.suggest("annual rep", 10))).containsExactly(1L);
+        assertThat(ids(trie.suggest("ANNUAL report 20", 10))).containsExactly(1L);
+        assertThat(trie.suggest("report annual", 10)).isEmpty();
+        assertThat(ids(trie.suggest("annual", 10))).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void ranksByWeightAndHonoursTheLimit() {
+        SuggestionTrie trie = new SuggestionTrie();
+        for (long id = 1; id <= 15; id++) {
+            trie.put("resource:" + id, resource(id, "Guideline " + id, id));
+        }
+
+        assertThat(ids(trie.suggest("guide", 3))).containsExactly(15L, 14L, 13L);
+        assertThat(trie.suggest("guide", 100)).hasSize(SuggestionTrie.MAX_SUGGESTIONS);
+    }
+
+    @Test
+    void reweightingReordersEveryPrefixOfTheWord() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put("resource:1", resource(1, "Newsletter March", 10));
+        trie.put("resource:2", resource(2, "Newsletter April", 1));
+
+        trie.put("resource:2", resource(2, "Newsletter April", 20));
+
+        assertThat(ids(trie.suggest("n", 10))).containsExactly(2L, 1L);
+        assertThat(ids(trie.suggest("newsletter", 10))).containsExactly(2L, 1L);
+        assertThat(trie.get("resource:2").weight()).isEqualTo(20);
+    }
+
+    @Test
+    void removingTheBestEntryPromotesOneBelowTheList() {
+        SuggestionTrie trie = new SuggestionTrie();
+        for (long id = 1; id <= SuggestionTrie.MAX_SUGGESTIONS + 1; id++) {
+            trie.put("resource:" + id, resource(id, "Report " + id, id));
+        }
+        assertThat(ids(trie.suggest("rep", 10))).doesNotContain(1L);
+
+        trie.remove("resource:" + (SuggestionTrie.MAX_SUGGESTIONS + 1));
+
+        assertThat(ids(trie.suggest("rep", 10))).hasSize(SuggestionTrie.MAX_SUGGESTIONS).contains(1L);
+    }
+
+    @Test
+    void retitlingDropsTheOldWords() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.put("resource:1", resource(1, "Draft Policy", 1));
+
+        trie.put("resource:1", resource(1, "Final Guideline", 1));
+
+        assertThat(trie.suggest("draft", 10)).isEmpty();
+        assertThat(trie.suggest("pol", 10)).isEmpty();
+        assertThat(ids(trie.suggest("final guide", 10))).containsExactly(1L);
+
+        trie.remove("resource:1");
+        assertThat(trie.suggest("final", 10)).isEmpty();
+        assertThat(trie.size()).isZero();
+    }
+
+    @Test
+    void bulkBuildMatchesIncrementalPuts() {
+        Map<String, Suggestion> suggestions = new HashMap<>();
+        SuggestionTrie incremental = new SuggestionTrie();
+        for (long id = 1; id <= 30; id++) {
+            Suggestion suggestion = resource(id, "Report on topic " + (id % 4) + " part " + id, id % 7);
+            suggestions.put("resource:" + id, suggestion);
+            incremental.put("resource:" + id, suggestion);
+        }
+        SuggestionTrie built = SuggestionTrie.of(suggestions);
+
+        for (String prefix : List.of("r", "report", "topic 2", "part 1", "on t")) {
+            assertThat(built.suggest(prefix, 10)).as(prefix).isEqualTo(incremental.suggest(prefix, 10));
+        }
+    }
+
+    private static Suggestion resource(long id, String title, long weight) {
+        return new Suggestion("resource", id, title, weight);
+    }
+
+    private static List<Long> ids(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::id).toList();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.proxy.service;
+
+import com.example.proxy.config.ProxyConfig;
+import com.example.proxy.service.UpstreamRouter.UpstreamInstance;
+import com.example.proxy.service.UpstreamRouter.UpstreamRoute;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamRouterTest {
+
+    private static final Duration COOL_DOWN = Duration.ofMillis(50);
+
+    private final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    private final CloseableHttpClient httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+    private UpstreamRoute route;
+    private UpstreamRouter router;
+
+    @BeforeEach
+    void setUp() {
+        ProxyConfig.Route pool = new ProxyConfig.Route();
+        pool.setPrefix("/reports");
+        pool.setInstances(List.of("http://reports-1:4000", "http://reports-2:4000"));
+
+        ProxyConfig config = new ProxyConfig();
+        config.setRoutes(List.of(pool));
+        config.setHealthCheckPath("");
+        config.setHealthCheckInterval(COOL_DOWN);
+        config.setUnhealthyThreshold(2);
+
+        router = new UpstreamRouter(config, "http://localhost:4000", httpClient, connectionManager,
+                RequestConfig.DEFAULT, new SimpleMeterRegistry());
+        route = router.route("/reports/annual");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        httpClient.close();
+    }
+
+    @Test
+    void ejectsAnInstanceAfterConsecutiveFailures() {
+        UpstreamInstance failing = route.instances().get(0);
+
+        router.recordFailure(failing);
+        assertThat(failing.isHealthy()).isTrue();
+        router.recordFailure(failing);
+
+        assertThat(failing.isHealthy()).isFalse();
+        for (int i = 0; i < 20; i++) {
+            assertThat(router.choose(route)).isSameAs(route.instances().get(1));
+        }
+    }
+
+    @Test
+    void sendsOneTrialRequestAfterTheCoolDownWithoutHealthChecks() throws InterruptedException {
+        UpstreamInstance failing = eject(route.instances().get(0));
+
+        Thread.sleep(COOL_DOWN.toMillis() + 10);
+
+        assertThat(router.choose(route)).isSameAs(failing);
+        assertThat(router.choose(route)).as("only one trial per cool-down").isNotSameAs(failing);
+        assertThat(failing.isHealthy()).isFalse();
+
+        router.recordSuccess(failing);
+        assertThat(failing.isHealthy()).isTrue();
+    }
+
+    @Test
+    void failedTrialWaitsAnotherCoolDown() throws InterruptedException {
+        UpstreamInstance failing = eject(route.instances().get(0));
+        Thread.sleep(COOL_DOWN.toMillis() + 10);
+        assertThat(router.choose(route)).isSameAs(failing);
+
+        router.recordFailure(failing);
+
+        assertThat(router.choose(route)).isNotSameAs(failing);
+        Thread.sleep(COOL_DOWN.toMillis() + 10);
+        assertThat(router.choose(route)).isSameAs(failing);
+    }
+
+    private UpstreamInstance eject(UpstreamInstance instance) {
+        router.recordFailure(instance);
+        router.recordFailure(instance);
+        assertThat(instance.isHealthy()).isFalse();
+        return instance;
+    }
+}
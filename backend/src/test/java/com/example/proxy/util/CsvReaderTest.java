@@ -0,0 +1,66 @@
+package com.example.proxy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTest {
+
+    @Test
+    void splitsPlainRecords() throws IOException {
+        assertThat(readAll("id,title\n1,Guide\n2,\n")).containsExactly(
+                List.of("id", "title"),
+                List.of("1", "Guide"),
+                List.of("2", ""));
+    }
+
+    @Test
+    void keepsCommasAndEscapedQuotesInsideQuotedFields() throws IOException {
+        assertThat(readAll("1,\"Smith, John\",\"say \"\"hi\"\"\"\n")).containsExactly(
+                List.of("1", "Smith, John", "say \"hi\""));
+    }
+
+    @Test
+    void endsRecordsAtCrlfAndAtTheEndOfInput() throws IOException {
+        assertThat(readAll("a,b\r\nc,\"d\"\r\ne,f")).containsExactly(
+                List.of("a", "b"),
+                List.of("c", "d"),
+                List.of("e", "f"));
+    }
+
+    @Test
+    void readsQuotedFieldsAcrossLines() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("1,\"first line\nsecond line\"\n2,next\n"));
+
+        assertThat(reader.next()).containsExactly("1", "first line\nsecond line");
+        assertThat(reader.line()).isEqualTo(1);
+        assertThat(reader.next()).containsExactly("2", "next");
+        assertThat(reader.line()).as("record after a multi-line field").isEqualTo(3);
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void rejectsAnUnterminatedQuotedField() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("1,ok\n2,\"never closed\nstill open"));
+        reader.next();
+
+        assertThatThrownBy(reader::next)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(csv));
+        List<List<String>> records = new ArrayList<>();
+        for (List<String> record = reader.next(); record != null; record = reader.next()) {
+            records.add(record);
+        }
+        return records;
+    }
+}